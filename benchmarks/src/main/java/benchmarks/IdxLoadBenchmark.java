@@ -0,0 +1,113 @@
+package benchmarks;
+
+import mnist.MnistImageFile;
+import mnist.MnistLabelFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading MNIST-sized IDX files, written with random pixels into a temporary directory: the bulk load into a
+ * UINT8 TrainingSet like MnistNumberDetector does, and one streamed pass of an IdxDataSource.
+ * The files are read from the page cache after the first iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdxLoadBenchmark {
+
+    private static final int IMAGE_SIZE = 28 * 28;
+
+    @Param({"10000", "60000"})
+    public int imageCount;
+
+    @Param({"100"})
+    public int batchSize;
+
+    private Path directory;
+    private String imageFileName;
+    private String labelFileName;
+    private double[] inputs;
+    private double[] targets;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        directory = Files.createTempDirectory("idx-benchmark");
+        imageFileName = directory.resolve("images.idx3-ubyte").toString();
+        labelFileName = directory.resolve("labels.idx1-ubyte").toString();
+        Random random = new Random(1);
+        byte[] pixels = new byte[IMAGE_SIZE];
+        try (DataOutputStream images = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(imageFileName))));
+             DataOutputStream labels = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(labelFileName))))) {
+            images.writeInt(2051);
+            images.writeInt(imageCount);
+            images.writeInt(28);
+            images.writeInt(28);
+            labels.writeInt(2049);
+            labels.writeInt(imageCount);
+            for (int i = 0; i < imageCount; i++) {
+                random.nextBytes(pixels);
+                images.write(pixels);
+                labels.writeByte(random.nextInt(10));
+            }
+        }
+        inputs = new double[batchSize * IMAGE_SIZE];
+        targets = new double[batchSize * 10];
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(Path.of(imageFileName));
+        Files.deleteIfExists(Path.of(labelFileName));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Object loadTrainingSet() throws IOException {
+        try (MnistImageFile imageFile = new MnistImageFile(imageFileName);
+             MnistLabelFile labelFile = new MnistLabelFile(labelFileName)) {
+            int count = imageFile.getCount();
+            byte[] pixels = new byte[count * imageFile.getEntryLength()];
+            byte[] labels = new byte[count];
+            imageFile.readImages(0, count, pixels, 0);
+            labelFile.readLabels(0, count, labels, 0);
+            Object set = NetworkApi.newTrainingSet(imageFile.getEntryLength(), 10, "UINT8");
+            NetworkApi.addData(set, pixels, 0, labels, 0, count);
+            return set;
+        }
+    }
+
+    @Benchmark
+    public int streamIdxDataSource() throws IOException {
+        Object source = NetworkApi.newIdxDataSource(imageFileName, labelFileName, 10, 1024);
+        try (Closeable closeable = (Closeable) source; Closeable cursor = (Closeable) NetworkApi.openCursor(source)) {
+            int samples = 0;
+            for (int count = NetworkApi.next(cursor, inputs, targets, batchSize); count > 0; count = NetworkApi.next(cursor, inputs, targets, batchSize)) {
+                samples += count;
+            }
+            return samples;
+        }
+    }
+}
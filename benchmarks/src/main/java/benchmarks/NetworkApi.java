@@ -0,0 +1,245 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+
+/**
+ * Calls into the network classes. They live in the unnamed package, which can't be imported from a named package,
+ * while JMH only accepts benchmarks in named packages. So every method is bound once to a static final method handle
+ * with Object in place of the network types; the JIT inlines calls through such handles like direct calls.
+ */
+final class NetworkApi {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> NETWORK = load("Network");
+    private static final Class<?> TRAINING_SET = load("TrainingSet");
+    private static final Class<?> TRAINING_OPTIONS = load("TrainingOptions");
+    private static final Class<?> PRECISION = load("Precision");
+    private static final Class<?> DATA_SOURCE = load("DataSource");
+    private static final Class<?> DATA_CURSOR = load("DataCursor");
+
+    private static final MethodHandle NEW_NETWORK = constructor(NETWORK, Random.class, int[].class);
+    private static final MethodHandle CALCULATE_OUTPUT = method(NETWORK, "calculateOutput", double[].class, double[].class);
+    private static final MethodHandle TRAIN = method(NETWORK, "train", void.class, double[].class, double[].class, double.class);
+    private static final MethodHandle TRAIN_WITH_DATA_SET = method(NETWORK, "trainWithDataSet", void.class, TRAINING_SET, TRAINING_OPTIONS);
+    private static final MethodHandle MSE_AVERAGE = method(NETWORK, "calcualteMSEAverage", double.class, TRAINING_SET);
+
+    private static final MethodHandle NEW_OPTIONS = constructor(TRAINING_OPTIONS, double.class);
+    private static final MethodHandle SET_BATCH_SIZE = method(TRAINING_OPTIONS, "setBatchSize", TRAINING_OPTIONS, int.class);
+    private static final MethodHandle SET_PRINT_LOG = method(TRAINING_OPTIONS, "setPrintLog", TRAINING_OPTIONS, boolean.class);
+
+    private static final MethodHandle NEW_TRAINING_SET = constructor(TRAINING_SET, int.class, int.class, PRECISION);
+    private static final MethodHandle ADD_BYTES = method(TRAINING_SET, "addData", void.class, byte[].class, int.class, byte[].class, int.class, int.class);
+    private static final MethodHandle GET_INPUT = method(TRAINING_SET, "getInput", double[].class, int.class);
+    private static final MethodHandle GET_OUTPUT = method(TRAINING_SET, "getOutput", double[].class, int.class);
+    private static final MethodHandle GET_DATA_COUNT = method(TRAINING_SET, "getDataCount", int.class);
+    private static final MethodHandle CREATE_SYNTHETIC = staticMethod(load("SyntheticDigits"), "createTrainingSet", TRAINING_SET, int.class, Random.class, PRECISION);
+
+    private static final MethodHandle NEW_IDX_DATA_SOURCE = constructor(load("IdxDataSource"), String.class, String.class, int.class, int.class);
+    private static final MethodHandle OPEN_CURSOR = method(DATA_SOURCE, "openCursor", DATA_CURSOR);
+    private static final MethodHandle NEXT = method(DATA_CURSOR, "next", int.class, double[].class, double[].class, int.class);
+
+    private NetworkApi() {
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findConstructor(type, MethodType.methodType(void.class, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle method(Class<?> type, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findVirtual(type, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> type, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return erase(LOOKUP.findStatic(type, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Replaces the network types in the type of the handle with Object.
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (type.parameterType(i).getPackageName().isEmpty() && !type.parameterType(i).isPrimitive() && !type.parameterType(i).isArray()) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (type.returnType().getPackageName().isEmpty() && !type.returnType().isPrimitive() && !type.returnType().isArray()) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) return (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        return new IllegalStateException(e);
+    }
+
+    static Object precision(String name) {
+        for (Object constant : PRECISION.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(name)) return constant;
+        }
+        throw new IllegalArgumentException("Unknown precision " + name);
+    }
+
+    /**
+     * @param layerSizes Layer sizes separated by '-', since the JMH command line splits parameters at commas.
+     */
+    static int[] parseLayerSizes(String layerSizes) {
+        String[] parts = layerSizes.split("-");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    static Object newNetwork(Random random, int[] layerSizes) {
+        try {
+            return (Object) NEW_NETWORK.invokeExact(random, layerSizes);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static double[] calculateOutput(Object network, double[] input) {
+        try {
+            return (double[]) CALCULATE_OUTPUT.invokeExact(network, input);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void train(Object network, double[] input, double[] expectedOutput, double eta) {
+        try {
+            TRAIN.invokeExact(network, input, expectedOutput, eta);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void trainWithDataSet(Object network, Object set, Object options) {
+        try {
+            TRAIN_WITH_DATA_SET.invokeExact(network, set, options);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static double calcualteMSEAverage(Object network, Object set) {
+        try {
+            return (double) MSE_AVERAGE.invokeExact(network, set);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * @return Quiet TrainingOptions with the given learning rate and batch size.
+     */
+    static Object newOptions(double eta, int batchSize) {
+        try {
+            Object options = (Object) NEW_OPTIONS.invokeExact(eta);
+            options = (Object) SET_BATCH_SIZE.invokeExact(options, batchSize);
+            return (Object) SET_PRINT_LOG.invokeExact(options, false);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object newTrainingSet(int inputSize, int outputSize, String precision) {
+        try {
+            return (Object) NEW_TRAINING_SET.invokeExact(inputSize, outputSize, precision(precision));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void addData(Object set, byte[] inputs, int inputOffset, byte[] labels, int labelOffset, int count) {
+        try {
+            ADD_BYTES.invokeExact(set, inputs, inputOffset, labels, labelOffset, count);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static double[] getInput(Object set, int index) {
+        try {
+            return (double[]) GET_INPUT.invokeExact(set, index);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static double[] getOutput(Object set, int index) {
+        try {
+            return (double[]) GET_OUTPUT.invokeExact(set, index);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int getDataCount(Object set) {
+        try {
+            return (int) GET_DATA_COUNT.invokeExact(set);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object createSyntheticSet(int count, Random random, String precision) {
+        try {
+            return (Object) CREATE_SYNTHETIC.invokeExact(count, random, precision(precision));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object newIdxDataSource(String imageFileName, String labelFileName, int numberOfClasses, int chunkSize) {
+        try {
+            return (Object) NEW_IDX_DATA_SOURCE.invokeExact(imageFileName, labelFileName, numberOfClasses, chunkSize);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object openCursor(Object source) {
+        try {
+            return (Object) OPEN_CURSOR.invokeExact(source);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int next(Object cursor, double[] inputs, double[] targets, int max) {
+        try {
+            return (int) NEXT.invokeExact(cursor, inputs, targets, max);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+}
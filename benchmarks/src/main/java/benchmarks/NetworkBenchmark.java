@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-sample methods of the network and the MSE of a whole set, on synthetic MNIST-sized data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkBenchmark {
+
+    private static final int SET_SIZE = 1000;
+
+    @Param({"784-30-10", "784-70-35-10", "784-256-128-10"})
+    public String layerSizes;
+
+    private Object network;
+    private Object set;
+    private double[] input;
+    private double[] expectedOutput;
+
+    @Setup
+    public void setUp() {
+        network = NetworkApi.newNetwork(new Random(42), NetworkApi.parseLayerSizes(layerSizes));
+        set = NetworkApi.createSyntheticSet(SET_SIZE, new Random(1), "DOUBLE");
+        input = NetworkApi.getInput(set, 0);
+        expectedOutput = NetworkApi.getOutput(set, 0);
+    }
+
+    @Benchmark
+    public double[] calculateOutput() {
+        return NetworkApi.calculateOutput(network, input);
+    }
+
+    @Benchmark
+    public Object train() {
+        NetworkApi.train(network, input, expectedOutput, 0.3);
+        return network;
+    }
+
+    /**
+     * One pass over all samples of the set.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double calcualteMSEAverage() {
+        return NetworkApi.calcualteMSEAverage(network, set);
+    }
+}
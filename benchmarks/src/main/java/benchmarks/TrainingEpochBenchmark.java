@@ -0,0 +1,59 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One training cycle of trainWithDataSet over a synthetic set, per layer sizes, batch size and storage precision.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainingEpochBenchmark {
+
+    private static final double ETA = 3.0;
+
+    @Param({"784-30-10", "784-70-35-10"})
+    public String layerSizes;
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    @Param({"DOUBLE", "UINT8"})
+    public String precision;
+
+    @Param("2000")
+    public int setSize;
+
+    private Object network;
+    private Object set;
+    private Object options;
+
+    @Setup
+    public void setUp() {
+        network = NetworkApi.newNetwork(new Random(42), NetworkApi.parseLayerSizes(layerSizes));
+        set = NetworkApi.createSyntheticSet(setSize, new Random(1), precision);
+        options = NetworkApi.newOptions(ETA, batchSize);
+    }
+
+    @Benchmark
+    public Object trainWithDataSet() {
+        NetworkApi.trainWithDataSet(network, set, options);
+        return network;
+    }
+}
@@ -0,0 +1,364 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels written with the incubating JDK Vector API, using the widest vectors of the CPU.
+ * Only compiled with the "vector" profile and only used if the JVM runs with --add-modules jdk.incubator.vector.
+ */
+final class VectorKernelBackend implements KernelBackend {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final DoubleVector ONE = DoubleVector.broadcast(SPECIES, 1);
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final FloatVector FLOAT_ONE = FloatVector.broadcast(FLOAT_SPECIES, 1);
+
+    // The bytes are widened to shorts, whose products of at most 128 * 255 can't overflow, and then to ints. A byte
+    // vector has at least 64 bits, so with 128-bit ints (SSE, NEON) its products are widened in two parts. The int8
+    // species are looked up separately: if the CPU can't provide them, only the byte kernels fall back to the scalar loops.
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTE_SPECIES = byteSpecies();
+    private static final VectorSpecies<Short> SHORT_SPECIES = BYTE_SPECIES == null ? null : VectorSpecies.of(short.class, VectorShape.forBitSize(BYTE_SPECIES.vectorBitSize() * 2));
+    private static final int INT_PARTS = BYTE_SPECIES == null ? 0 : BYTE_SPECIES.vectorBitSize() * 4 / INT_SPECIES.vectorBitSize();
+    // The smallest byte species, for the bytes which are widened to doubles. JDK 17 doesn't intrinsify widening them
+    // to two doubles (SSE, NEON), so there the scalar backend is faster.
+    private static final VectorSpecies<Byte> DOUBLE_BYTE_SPECIES = ByteVector.SPECIES_64;
+    private static final KernelBackend SCALAR = SPECIES.length() < 4 ? new ScalarKernelBackend() : null;
+
+    /**
+     * @return The species of a quarter of the preferred int vector, but at least 64 bits, or null if it's not supported.
+     */
+    private static VectorSpecies<Byte> byteSpecies() {
+        try {
+            int bitSize = Math.max(64, INT_SPECIES.vectorBitSize() / 4);
+            VectorSpecies.of(short.class, VectorShape.forBitSize(bitSize * 2));
+            return VectorSpecies.of(byte.class, VectorShape.forBitSize(bitSize));
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOAT_SPECIES);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public int dotBytes(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector sum = IntVector.zero(INT_SPECIES);
+        int i = 0;
+        int bound = BYTE_SPECIES == null ? 0 : BYTE_SPECIES.loopBound(length);
+        for (; i < bound; i += BYTE_SPECIES.length()) {
+            ShortVector va = (ShortVector) ByteVector.fromArray(BYTE_SPECIES, a, aOffset + i).convertShape(VectorOperators.B2S, SHORT_SPECIES, 0);
+            ShortVector vb = ((ShortVector) ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i).convertShape(VectorOperators.B2S, SHORT_SPECIES, 0)).and((short) 0xFF);
+            ShortVector products = va.mul(vb);
+            for (int part = 0; part < INT_PARTS; part++) {
+                sum = sum.add((IntVector) products.convertShape(VectorOperators.S2I, INT_SPECIES, part));
+            }
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * (b[bOffset + i] & 0xFF);
+        }
+        return result;
+    }
+
+    @Override
+    public void dot4Bytes(byte[] a, int aOffset, int aStride, byte[] b, int bOffset, int length, int[] c, int cOffset) {
+        int a0 = aOffset;
+        int a1 = a0 + aStride;
+        int a2 = a1 + aStride;
+        int a3 = a2 + aStride;
+        IntVector sum0 = IntVector.zero(INT_SPECIES);
+        IntVector sum1 = sum0, sum2 = sum0, sum3 = sum0;
+        int i = 0;
+        int bound = BYTE_SPECIES == null ? 0 : BYTE_SPECIES.loopBound(length);
+        for (; i < bound; i += BYTE_SPECIES.length()) {
+            // The unsigned bytes are widened once for the four rows.
+            ShortVector value = ((ShortVector) ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i).convertShape(VectorOperators.B2S, SHORT_SPECIES, 0)).and((short) 0xFF);
+            ShortVector products0 = value.mul((ShortVector) ByteVector.fromArray(BYTE_SPECIES, a, a0 + i).convertShape(VectorOperators.B2S, SHORT_SPECIES, 0));
+            ShortVector products1 = value.mul((ShortVector) ByteVector.fromArray(BYTE_SPECIES, a, a1 + i).convertShape(VectorOperators.B2S, SHORT_SPECIES, 0));
+            ShortVector products2 = value.mul((ShortVector) ByteVector.fromArray(BYTE_SPECIES, a, a2 + i).convertShape(VectorOperators.B2S, SHORT_SPECIES, 0));
+            ShortVector products3 = value.mul((ShortVector) ByteVector.fromArray(BYTE_SPECIES, a, a3 + i).convertShape(VectorOperators.B2S, SHORT_SPECIES, 0));
+            for (int part = 0; part < INT_PARTS; part++) {
+                sum0 = sum0.add((IntVector) products0.convertShape(VectorOperators.S2I, INT_SPECIES, part));
+                sum1 = sum1.add((IntVector) products1.convertShape(VectorOperators.S2I, INT_SPECIES, part));
+                sum2 = sum2.add((IntVector) products2.convertShape(VectorOperators.S2I, INT_SPECIES, part));
+                sum3 = sum3.add((IntVector) products3.convertShape(VectorOperators.S2I, INT_SPECIES, part));
+            }
+        }
+        int result0 = sum0.reduceLanes(VectorOperators.ADD);
+        int result1 = sum1.reduceLanes(VectorOperators.ADD);
+        int result2 = sum2.reduceLanes(VectorOperators.ADD);
+        int result3 = sum3.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            int value = b[bOffset + i] & 0xFF;
+            result0 += a[a0 + i] * value;
+            result1 += a[a1 + i] * value;
+            result2 += a[a2 + i] * value;
+            result3 += a[a3 + i] * value;
+        }
+        c[cOffset] = result0;
+        c[cOffset + 1] = result1;
+        c[cOffset + 2] = result2;
+        c[cOffset + 3] = result3;
+    }
+
+    @Override
+    public void dot4Bytes(byte[] a, int aOffset, int aStride, double[] b, int bOffset, int length, double[] c, int cOffset) {
+        if (SCALAR != null) {
+            SCALAR.dot4Bytes(a, aOffset, aStride, b, bOffset, length, c, cOffset);
+            return;
+        }
+        int a0 = aOffset;
+        int a1 = a0 + aStride;
+        int a2 = a1 + aStride;
+        int a3 = a2 + aStride;
+        DoubleVector sum0 = DoubleVector.zero(SPECIES);
+        DoubleVector sum1 = sum0, sum2 = sum0, sum3 = sum0;
+        int i = 0;
+        // Only the first lanes of the byte vectors are widened, the next ones are loaded again in the next step:
+        // widening the later parts of a byte vector isn't intrinsified.
+        for (; i + DOUBLE_BYTE_SPECIES.length() <= length; i += SPECIES.length()) {
+            DoubleVector value = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            sum0 = ((DoubleVector) ByteVector.fromArray(DOUBLE_BYTE_SPECIES, a, a0 + i).convertShape(VectorOperators.B2D, SPECIES, 0)).fma(value, sum0);
+            sum1 = ((DoubleVector) ByteVector.fromArray(DOUBLE_BYTE_SPECIES, a, a1 + i).convertShape(VectorOperators.B2D, SPECIES, 0)).fma(value, sum1);
+            sum2 = ((DoubleVector) ByteVector.fromArray(DOUBLE_BYTE_SPECIES, a, a2 + i).convertShape(VectorOperators.B2D, SPECIES, 0)).fma(value, sum2);
+            sum3 = ((DoubleVector) ByteVector.fromArray(DOUBLE_BYTE_SPECIES, a, a3 + i).convertShape(VectorOperators.B2D, SPECIES, 0)).fma(value, sum3);
+        }
+        double result0 = sum0.reduceLanes(VectorOperators.ADD);
+        double result1 = sum1.reduceLanes(VectorOperators.ADD);
+        double result2 = sum2.reduceLanes(VectorOperators.ADD);
+        double result3 = sum3.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double value = b[bOffset + i];
+            result0 += a[a0 + i] * value;
+            result1 += a[a1 + i] * value;
+            result2 += a[a2 + i] * value;
+            result3 += a[a3 + i] * value;
+        }
+        c[cOffset] = result0;
+        c[cOffset + 1] = result1;
+        c[cOffset + 2] = result2;
+        c[cOffset + 3] = result3;
+    }
+
+    @Override
+    public void multiplySparseBytes(int[] values, int[] indices, int count, byte[] a, int aOffset, int[] c, int n) {
+        int bound = BYTE_SPECIES == null ? 0 : BYTE_SPECIES.loopBound(n);
+        for (int p = 0; p < count; p++) {
+            int value = values[p];
+            int row = aOffset + indices[p] * n;
+            int i = 0;
+            // Widened straight to ints, the row is added to c.
+            for (; i < bound; i += BYTE_SPECIES.length()) {
+                ByteVector bytes = ByteVector.fromArray(BYTE_SPECIES, a, row + i);
+                for (int part = 0; part < INT_PARTS; part++) {
+                    int cIndex = i + part * INT_SPECIES.length();
+                    IntVector products = ((IntVector) bytes.convertShape(VectorOperators.B2I, INT_SPECIES, part)).mul(value);
+                    products.add(IntVector.fromArray(INT_SPECIES, c, cIndex)).intoArray(c, cIndex);
+                }
+            }
+            for (; i < n; i++) {
+                c[i] += a[row + i] * value;
+            }
+        }
+    }
+
+    @Override
+    public void dot4(double[] a, int aOffset, double[] b, int bOffset, int bStride, int length, double[] c, int cOffset) {
+        int b0 = bOffset;
+        int b1 = b0 + bStride;
+        int b2 = b1 + bStride;
+        int b3 = b2 + bStride;
+        DoubleVector sum0 = DoubleVector.zero(SPECIES);
+        DoubleVector sum1 = DoubleVector.zero(SPECIES);
+        DoubleVector sum2 = DoubleVector.zero(SPECIES);
+        DoubleVector sum3 = DoubleVector.zero(SPECIES);
+        int p = 0;
+        for (int bound = SPECIES.loopBound(length); p < bound; p += SPECIES.length()) {
+            DoubleVector value = DoubleVector.fromArray(SPECIES, a, aOffset + p);
+            sum0 = value.fma(DoubleVector.fromArray(SPECIES, b, b0 + p), sum0);
+            sum1 = value.fma(DoubleVector.fromArray(SPECIES, b, b1 + p), sum1);
+            sum2 = value.fma(DoubleVector.fromArray(SPECIES, b, b2 + p), sum2);
+            sum3 = value.fma(DoubleVector.fromArray(SPECIES, b, b3 + p), sum3);
+        }
+        double result0 = sum0.reduceLanes(VectorOperators.ADD);
+        double result1 = sum1.reduceLanes(VectorOperators.ADD);
+        double result2 = sum2.reduceLanes(VectorOperators.ADD);
+        double result3 = sum3.reduceLanes(VectorOperators.ADD);
+        for (; p < length; p++) {
+            double value = a[aOffset + p];
+            result0 += value * b[b0 + p];
+            result1 += value * b[b1 + p];
+            result2 += value * b[b2 + p];
+            result3 += value * b[b3 + p];
+        }
+        c[cOffset] += result0;
+        c[cOffset + 1] += result1;
+        c[cOffset + 2] += result2;
+        c[cOffset + 3] += result3;
+    }
+
+    @Override
+    public void dot4(float[] a, int aOffset, float[] b, int bOffset, int bStride, int length, float[] c, int cOffset) {
+        int b0 = bOffset;
+        int b1 = b0 + bStride;
+        int b2 = b1 + bStride;
+        int b3 = b2 + bStride;
+        FloatVector sum0 = FloatVector.zero(FLOAT_SPECIES);
+        FloatVector sum1 = FloatVector.zero(FLOAT_SPECIES);
+        FloatVector sum2 = FloatVector.zero(FLOAT_SPECIES);
+        FloatVector sum3 = FloatVector.zero(FLOAT_SPECIES);
+        int p = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); p < bound; p += FLOAT_SPECIES.length()) {
+            FloatVector value = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + p);
+            sum0 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b, b0 + p), sum0);
+            sum1 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b, b1 + p), sum1);
+            sum2 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b, b2 + p), sum2);
+            sum3 = value.fma(FloatVector.fromArray(FLOAT_SPECIES, b, b3 + p), sum3);
+        }
+        float result0 = sum0.reduceLanes(VectorOperators.ADD);
+        float result1 = sum1.reduceLanes(VectorOperators.ADD);
+        float result2 = sum2.reduceLanes(VectorOperators.ADD);
+        float result3 = sum3.reduceLanes(VectorOperators.ADD);
+        for (; p < length; p++) {
+            float value = a[aOffset + p];
+            result0 += value * b[b0 + p];
+            result1 += value * b[b1 + p];
+            result2 += value * b[b2 + p];
+            result3 += value * b[b3 + p];
+        }
+        c[cOffset] += result0;
+        c[cOffset + 1] += result1;
+        c[cOffset + 2] += result2;
+        c[cOffset + 3] += result3;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        DoubleVector factor = DoubleVector.broadcast(SPECIES, alpha);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xOffset + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, yOffset + i);
+            vx.fma(factor, vy).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        FloatVector factor = FloatVector.broadcast(FLOAT_SPECIES, alpha);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOAT_SPECIES, x, xOffset + i);
+            FloatVector vy = FloatVector.fromArray(FLOAT_SPECIES, y, yOffset + i);
+            vx.fma(factor, vy).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void backpropRow(double alpha, double beta, double[] w, int wOffset, double[] x, int xOffset, double[] error, int errorOffset, int length) {
+        DoubleVector errorFactor = DoubleVector.broadcast(SPECIES, alpha);
+        DoubleVector updateFactor = DoubleVector.broadcast(SPECIES, beta);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector weight = DoubleVector.fromArray(SPECIES, w, wOffset + i);
+            DoubleVector ve = DoubleVector.fromArray(SPECIES, error, errorOffset + i);
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xOffset + i);
+            weight.fma(errorFactor, ve).intoArray(error, errorOffset + i);
+            vx.fma(updateFactor, weight).intoArray(w, wOffset + i);
+        }
+        for (; i < length; i++) {
+            double weight = w[wOffset + i];
+            error[errorOffset + i] += alpha * weight;
+            w[wOffset + i] = weight + beta * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void backpropRow(float alpha, float beta, float[] w, int wOffset, float[] x, int xOffset, float[] error, int errorOffset, int length) {
+        FloatVector errorFactor = FloatVector.broadcast(FLOAT_SPECIES, alpha);
+        FloatVector updateFactor = FloatVector.broadcast(FLOAT_SPECIES, beta);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector weight = FloatVector.fromArray(FLOAT_SPECIES, w, wOffset + i);
+            FloatVector ve = FloatVector.fromArray(FLOAT_SPECIES, error, errorOffset + i);
+            FloatVector vx = FloatVector.fromArray(FLOAT_SPECIES, x, xOffset + i);
+            weight.fma(errorFactor, ve).intoArray(error, errorOffset + i);
+            vx.fma(updateFactor, weight).intoArray(w, wOffset + i);
+        }
+        for (; i < length; i++) {
+            float weight = w[wOffset + i];
+            error[errorOffset + i] += alpha * weight;
+            w[wOffset + i] = weight + beta * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] values, int offset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, offset + i);
+            ONE.div(v.neg().lanewise(VectorOperators.EXP).add(ONE)).intoArray(values, offset + i);
+        }
+        for (; i < length; i++) {
+            values[offset + i] = 1d / (1 + Math.exp(-values[offset + i]));
+        }
+    }
+
+    @Override
+    public void sigmoid(float[] values, int offset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_SPECIES.length()) {
+            FloatVector v = FloatVector.fromArray(FLOAT_SPECIES, values, offset + i);
+            FLOAT_ONE.div(v.neg().lanewise(VectorOperators.EXP).add(FLOAT_ONE)).intoArray(values, offset + i);
+        }
+        for (; i < length; i++) {
+            values[offset + i] = (float) (1d / (1 + Math.exp(-values[offset + i])));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " x double)";
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.Arrays;
+
+/**
+ * The activation functions a layer of a {@link Network} can use.
+ * Every function is applied to a whole layer of a whole batch with one call, so the loops over the neurons stay
+ * monomorphic and the JIT compiles one tight loop per function instead of calling a function per neuron.
+ * The derivatives are calculated from the outputs of the function, which is all backpropagation keeps.
+ */
+public enum Activation {
+
+    /**
+     * 1 / (1 + e^-x), calculated as the {@link SigmoidMode} of the training or inference asks for.
+     */
+    SIGMOID {
+        @Override
+        public void apply(double[] values, int count, int size) {
+            MatrixKernels.sigmoid(values, 0, count * size);
+        }
+
+        @Override
+        void apply(double[] values, int count, int size, SigmoidMode sigmoidMode) {
+            sigmoidMode.apply(values, 0, count * size);
+        }
+
+        @Override
+        void multiplyDerivative(double[] outputs, double[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] *= outputs[i] * (1 - outputs[i]);
+            }
+        }
+
+        @Override
+        void apply(float[] values, int count, int size) {
+            MatrixKernels.sigmoid(values, 0, count * size);
+        }
+
+        @Override
+        void multiplyDerivative(float[] outputs, float[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] *= outputs[i] * (1 - outputs[i]);
+            }
+        }
+    },
+
+    /**
+     * The hyperbolic tangent, in [-1, 1].
+     */
+    TANH {
+        @Override
+        public void apply(double[] values, int count, int size) {
+            for (int i = 0; i < count * size; i++) {
+                values[i] = Math.tanh(values[i]);
+            }
+        }
+
+        @Override
+        void multiplyDerivative(double[] outputs, double[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] *= 1 - outputs[i] * outputs[i];
+            }
+        }
+
+        @Override
+        void apply(float[] values, int count, int size) {
+            for (int i = 0; i < count * size; i++) {
+                values[i] = (float) Math.tanh(values[i]);
+            }
+        }
+
+        @Override
+        void multiplyDerivative(float[] outputs, float[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] *= 1 - outputs[i] * outputs[i];
+            }
+        }
+    },
+
+    /**
+     * max(0, x).
+     */
+    RELU {
+        @Override
+        public void apply(double[] values, int count, int size) {
+            for (int i = 0; i < count * size; i++) {
+                values[i] = Math.max(0, values[i]);
+            }
+        }
+
+        @Override
+        void multiplyDerivative(double[] outputs, double[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] = outputs[i] > 0 ? errorSignals[i] : 0;
+            }
+        }
+
+        @Override
+        void apply(float[] values, int count, int size) {
+            for (int i = 0; i < count * size; i++) {
+                values[i] = Math.max(0, values[i]);
+            }
+        }
+
+        @Override
+        void multiplyDerivative(float[] outputs, float[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] = outputs[i] > 0 ? errorSignals[i] : 0;
+            }
+        }
+
+        @Override
+        double weightLimit(int fanIn, int fanOut) {
+            return Math.sqrt(6d / fanIn);
+        }
+    },
+
+    /**
+     * x for positive x, 0.01 * x otherwise, so neurons with negative inputs still learn.
+     */
+    LEAKY_RELU {
+        @Override
+        public void apply(double[] values, int count, int size) {
+            for (int i = 0; i < count * size; i++) {
+                double x = values[i];
+                values[i] = x > 0 ? x : LEAKY_SLOPE * x;
+            }
+        }
+
+        @Override
+        void multiplyDerivative(double[] outputs, double[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] *= outputs[i] > 0 ? 1 : LEAKY_SLOPE;
+            }
+        }
+
+        @Override
+        void apply(float[] values, int count, int size) {
+            for (int i = 0; i < count * size; i++) {
+                float x = values[i];
+                values[i] = x > 0 ? x : (float) LEAKY_SLOPE * x;
+            }
+        }
+
+        @Override
+        void multiplyDerivative(float[] outputs, float[] errorSignals, int length) {
+            for (int i = 0; i < length; i++) {
+                errorSignals[i] *= outputs[i] > 0 ? 1 : (float) LEAKY_SLOPE;
+            }
+        }
+
+        @Override
+        double weightLimit(int fanIn, int fanOut) {
+            return Math.sqrt(6d / fanIn);
+        }
+    },
+
+    /**
+     * e^x / sum(e^x) over the neurons of the layer, so the outputs of a sample are probabilities that add up to 1.
+     * Only allowed for the output layer, which is then trained with the cross-entropy loss instead of the squared
+     * error: its error signal is simply output - expected output.
+     */
+    SOFTMAX {
+        @Override
+        public void apply(double[] values, int count, int size) {
+            for (int row = 0; row < count * size; row += size) {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int i = row; i < row + size; i++) {
+                    max = Math.max(max, values[i]);
+                }
+                double sum = 0;
+                for (int i = row; i < row + size; i++) {
+                    values[i] = Math.exp(values[i] - max);
+                    sum += values[i];
+                }
+                double inverse = 1 / sum;
+                for (int i = row; i < row + size; i++) {
+                    values[i] *= inverse;
+                }
+            }
+        }
+
+        @Override
+        void multiplyDerivative(double[] outputs, double[] errorSignals, int length) {
+            throw new UnsupportedOperationException("Softmax is only supported for the output layer.");
+        }
+
+        @Override
+        void apply(float[] values, int count, int size) {
+            for (int row = 0; row < count * size; row += size) {
+                float max = Float.NEGATIVE_INFINITY;
+                for (int i = row; i < row + size; i++) {
+                    max = Math.max(max, values[i]);
+                }
+                float sum = 0;
+                for (int i = row; i < row + size; i++) {
+                    values[i] = (float) Math.exp(values[i] - max);
+                    sum += values[i];
+                }
+                float inverse = 1 / sum;
+                for (int i = row; i < row + size; i++) {
+                    values[i] *= inverse;
+                }
+            }
+        }
+
+        @Override
+        void multiplyDerivative(float[] outputs, float[] errorSignals, int length) {
+            throw new UnsupportedOperationException("Softmax is only supported for the output layer.");
+        }
+    };
+
+    private static final double LEAKY_SLOPE = 0.01;
+
+    /**
+     * Replaces every value of the first count rows of size values with its activation.
+     */
+    public abstract void apply(double[] values, int count, int size);
+
+    /**
+     * Like {@link #apply(double[], int, int)}, but calculates the sigmoid function as given.
+     */
+    void apply(double[] values, int count, int size, SigmoidMode sigmoidMode) {
+        apply(values, count, size);
+    }
+
+    /**
+     * Multiplies every error signal in [0, length) with the derivative of this function at the matching output.
+     */
+    abstract void multiplyDerivative(double[] outputs, double[] errorSignals, int length);
+
+    /**
+     * Like {@link #apply(double[], int, int)} in single precision, with the exact sigmoid function.
+     */
+    abstract void apply(float[] values, int count, int size);
+
+    /**
+     * Like {@link #multiplyDerivative(double[], double[], int)} in single precision.
+     */
+    abstract void multiplyDerivative(float[] outputs, float[] errorSignals, int length);
+
+    /**
+     * @return The bound of the uniform distribution which the weights of a layer with this activation are initialised
+     *         with: Glorot for the saturating functions, He for the rectifiers.
+     */
+    double weightLimit(int fanIn, int fanOut) {
+        return Math.sqrt(6d / (fanIn + fanOut));
+    }
+
+    /**
+     * @return The activations of a NN with the given number of layers, the given activation for all hidden layers
+     *         and the given one for the output layer.
+     */
+    public static Activation[] of(Activation hidden, Activation output, int numberOfLayers) {
+        if (numberOfLayers < 2) throw new IllegalArgumentException("A network needs at least 2 layers.");
+        Activation[] activations = new Activation[numberOfLayers - 1];
+        Arrays.fill(activations, hidden);
+        activations[numberOfLayers - 2] = output;
+        return activations;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Adam: every parameter keeps running averages of its gradient and its squared gradient and moves by
+ * eta * average / sqrt(squared average), so every parameter gets its own step size. Both averages are corrected
+ * for starting at 0. Works best with a much smaller learning rate than SGD, like 0.001.
+ */
+public class AdamOptimizer implements Optimizer {
+
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+
+    public AdamOptimizer() {
+        this(0.9, 0.999, 1e-8);
+    }
+
+    /**
+     * @param beta1 How much of the average gradient is kept every step.
+     * @param beta2 How much of the average squared gradient is kept every step.
+     * @param epsilon Keeps the step finite for parameters whose gradient was always 0.
+     */
+    public AdamOptimizer(double beta1, double beta2, double epsilon) {
+        if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) throw new IllegalArgumentException("The betas have to be in [0, 1).");
+        if (epsilon <= 0) throw new IllegalArgumentException("Epsilon has to be positive.");
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public OptimizerState createState(int parameterCount) {
+        return new State(parameterCount);
+    }
+
+    private class State implements OptimizerState {
+        private final double[] mean;
+        private final double[] squaredMean;
+        private double beta1Power = 1; // beta1^step
+        private double beta2Power = 1;
+
+        private State(int parameterCount) {
+            this.mean = new double[parameterCount];
+            this.squaredMean = new double[parameterCount];
+        }
+
+        @Override
+        public void nextStep() {
+            beta1Power *= beta1;
+            beta2Power *= beta2;
+        }
+
+        @Override
+        public void update(double[] parameters, double[] gradients, int stateOffset, int from, int to, double eta, int count) {
+            // The corrections of both averages folded into the step size.
+            double rate = eta * Math.sqrt(1 - beta2Power) / (1 - beta1Power);
+            double correctedEpsilon = epsilon * Math.sqrt(1 - beta2Power);
+            double scale = 1d / count;
+            for (int i = from; i < to; i++) {
+                double gradient = gradients[i] * scale;
+                int s = stateOffset + i;
+                double m = beta1 * mean[s] + (1 - beta1) * gradient;
+                double v = beta2 * squaredMean[s] + (1 - beta2) * gradient * gradient;
+                mean[s] = m;
+                squaredMean[s] = v;
+                parameters[i] -= rate * m / (Math.sqrt(v) + correctedEpsilon);
+            }
+        }
+
+        @Override
+        public void update(float[] parameters, float[] gradients, int stateOffset, int from, int to, double eta, int count) {
+            double rate = eta * Math.sqrt(1 - beta2Power) / (1 - beta1Power);
+            double correctedEpsilon = epsilon * Math.sqrt(1 - beta2Power);
+            double scale = 1d / count;
+            for (int i = from; i < to; i++) {
+                double gradient = gradients[i] * scale;
+                int s = stateOffset + i;
+                double m = beta1 * mean[s] + (1 - beta1) * gradient;
+                double v = beta2 * squaredMean[s] + (1 - beta2) * gradient * gradient;
+                mean[s] = m;
+                squaredMean[s] = v;
+                parameters[i] -= (float) (rate * m / (Math.sqrt(v) + correctedEpsilon));
+            }
+        }
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.Random;
+
 /**
  * From https://www.youtube.com/watch?v=4CTBRmoY7ao&list=PLgomWLYGNl1dL1Qsmgumhcg4HOcWZMd3k&index=5
  */
@@ -25,6 +27,17 @@ public class ArrayHelperMethods {
         return ar;
     }
 
+    public static double[] createRandomArray(int size, double lower_bound, double upper_bound, Random random){
+        if(size < 1){
+            return null;
+        }
+        double[] ar = new double[size];
+        for(int i = 0; i < size; i++){
+            ar[i] = random.nextDouble()*(upper_bound-lower_bound) + lower_bound;
+        }
+        return ar;
+    }
+
     public static double[][] createRandom2DArray(int sizeX, int sizeY, double lower_bound, double upper_bound){
         if(sizeX < 1 || sizeY < 1){
             return null;
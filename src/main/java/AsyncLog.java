@@ -0,0 +1,42 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prints the log of the training on a background thread, so the training thread doesn't wait for the console.
+ * The lines keep their order. Callers check whether logging is enabled before building a line, so disabled
+ * logging costs nothing but that check.
+ */
+final class AsyncLog {
+
+    private static final ExecutorService printer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "training-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AsyncLog() {
+    }
+
+    /**
+     * Queues the line to be printed to System.out.
+     */
+    static void println(String line) {
+        printer.execute(() -> System.out.println(line));
+    }
+
+    /**
+     * Waits until all queued lines are printed.
+     */
+    static void flush() {
+        Future<?> done = printer.submit(() -> { });
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Scratch buffers for training a {@link Network} with a whole batch of samples at once.
+ * Activations and error signals hold one sample per row ([layer][sample * layerSize + neuron]),
+ * the gradients have the same layout as the flat weight and bias buffers of the network.
+ */
+class BatchWorkspace {
+
+    final int capacity;
+    final double[][] activations; // activations[0] holds the inputs of the batch. Null in single precision.
+    final double[][] errorSignals;
+    final double[] targets; //[sample * outputSize + neuron]
+    final double[] weightGradient; // null if the workspace is only used for per-sample training
+    final double[] biasGradient;
+    final float[][] floatActivations; // The same buffers in single precision, null in double precision
+    final float[][] floatErrorSignals;
+    final float[] floatTargets;
+    final float[] floatWeightGradient;
+    final float[] floatBiasGradient;
+    final SparseInputs sparseInputs;
+    boolean sparse; // Whether sparseInputs holds the inputs of the current batch
+    SigmoidMode sigmoidMode = SigmoidMode.EXACT;
+    final long[] phaseNanos = new long[TrainingPhase.values().length]; // Time measured on this workspace, see TrainingMonitor
+    boolean profiling;
+
+    /**
+     * Creates a workspace with gradient buffers in the given precision, DOUBLE or FLOAT.
+     */
+    BatchWorkspace(int capacity, int[] layerSizes, Precision precision, int weightCount, int biasCount) {
+        this(capacity, layerSizes, precision, weightCount, biasCount, true);
+    }
+    
+    /**
+     * Creates a workspace without gradient buffers, for training that updates the weights directly.
+     */
+    BatchWorkspace(int capacity, int[] layerSizes, Precision precision) {
+        this(capacity, layerSizes, precision, 0, 0, false);
+    }
+    
+    private BatchWorkspace(int capacity, int[] layerSizes, Precision precision, int weightCount, int biasCount, boolean gradients) {
+        this.capacity = capacity;
+        boolean single = precision == Precision.FLOAT;
+        this.activations = single ? null : new double[layerSizes.length][];
+        this.errorSignals = single ? null : new double[layerSizes.length][];
+        this.floatActivations = single ? new float[layerSizes.length][] : null;
+        this.floatErrorSignals = single ? new float[layerSizes.length][] : null;
+        for (int layer = 0; layer < layerSizes.length; layer++) {
+            if (single) {
+                this.floatActivations[layer] = new float[capacity * layerSizes[layer]];
+                this.floatErrorSignals[layer] = new float[capacity * layerSizes[layer]];
+            } else {
+                this.activations[layer] = new double[capacity * layerSizes[layer]];
+                this.errorSignals[layer] = new double[capacity * layerSizes[layer]];
+            }
+        }
+        int targetCount = capacity * layerSizes[layerSizes.length - 1];
+        this.targets = single ? null : new double[targetCount];
+        this.floatTargets = single ? new float[targetCount] : null;
+        this.weightGradient = gradients && !single ? new double[weightCount] : null;
+        this.biasGradient = gradients && !single ? new double[biasCount] : null;
+        this.floatWeightGradient = gradients && single ? new float[weightCount] : null;
+        this.floatBiasGradient = gradients && single ? new float[biasCount] : null;
+        this.sparseInputs = new SparseInputs(capacity, layerSizes[0], precision);
+    }
+    
+    /**
+     * @return Whether the workspace has gradient buffers, so it can train with batches.
+     */
+    boolean hasGradients() {
+        return weightGradient != null || floatWeightGradient != null;
+    }
+    
+    /**
+     * @return The start time of a phase, or 0 if the workspace doesn't measure its phases.
+     */
+    long startPhase() {
+        return profiling ? System.nanoTime() : 0;
+    }
+    
+    /**
+     * Adds the time since start to the given phase.
+     *
+     * @return The start time of the next phase.
+     */
+    long endPhase(TrainingPhase phase, long start) {
+        if (!profiling) return 0;
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - start;
+        return now;
+    }
+}
@@ -0,0 +1,22 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * One pass over the samples of a {@link DataSource}. Not thread-safe, every thread needs its own cursor.
+ */
+public interface DataCursor extends Closeable {
+
+    /**
+     * Copies the next samples into the given arrays, one sample per row like in a training batch.
+     *
+     * @param inputs Receives the inputs, [sample * inputSize + neuron].
+     * @param targets Receives the expected outputs, [sample * outputSize + neuron].
+     * @param max How many samples are copied at most.
+     * @return How many samples were copied, 0 at the end of the pass.
+     */
+    int next(double[] inputs, double[] targets, int max) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
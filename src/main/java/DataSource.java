@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Samples a {@link Network} can be trained with, read one pass at a time through a {@link DataCursor}.
+ * Unlike a {@link TrainingSet} a source doesn't have to hold its samples in memory, it can stream them from disk.
+ */
+public interface DataSource {
+
+    int getInputSize();
+
+    int getOutputSize();
+
+    /**
+     * @return The number of samples of one pass.
+     */
+    int getDataCount();
+
+    /**
+     * Starts a new pass over all samples.
+     *
+     * @param random Shuffles the order of the samples if not null. A source which streams its samples
+     *               may only shuffle them within a limited window.
+     */
+    DataCursor openCursor(Random random) throws IOException;
+
+    /**
+     * Starts a new pass over all samples in their stored order.
+     */
+    default DataCursor openCursor() throws IOException {
+        return openCursor(null);
+    }
+}
@@ -0,0 +1,104 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Trains one Network with several worker JVMs on localhost through a {@link ParameterServer} and compares it with
+ * training in a single process. The server runs in this JVM and starts the workers as child processes with the same
+ * java and class path; every worker trains on every n-th sample. Uses MNIST if the image files are in the resources,
+ * synthetic data otherwise. The first worker can be slowed down to see that the others don't wait for it.
+ *
+ * Arguments: [workers] [training cycles] [sync interval in batches] [delay of the first worker per cycle in ms]
+ * A worker is started with: worker [port] [index] [workers] [training cycles] [sync interval] [delay in ms]
+ */
+public class DistributedTraining {
+
+    private static final double ETA = 3.0;
+    private static final int BATCH_SIZE = 10;
+    private static final int[] HIDDEN_LAYERS = {70, 35};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("worker")) {
+            runWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]), Integer.parseInt(args[5]), Long.parseLong(args[6]));
+            return;
+        }
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int trainingCycles = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int syncInterval = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long delayMillis = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        TrainingSet testSet = loadSet(false);
+        TrainingSet trainingSet = loadSet(true);
+
+        Network single = createNetwork(trainingSet);
+        long start = System.nanoTime();
+        single.trainWithDataSet(trainingSet, new TrainingOptions(ETA).setTrainingCycles(trainingCycles).setBatchSize(BATCH_SIZE).setPrintLog(false));
+        double singleSeconds = (System.nanoTime() - start) / 1e9;
+
+        Network network = createNetwork(trainingSet);
+        double distributedSeconds;
+        try (ParameterServer server = new ParameterServer(network, 0, workers)) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            List<Process> processes = new ArrayList<>(workers);
+            start = System.nanoTime();
+            for (int worker = 0; worker < workers; worker++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), DistributedTraining.class.getName(), "worker",
+                        String.valueOf(server.getPort()), String.valueOf(worker), String.valueOf(workers), String.valueOf(trainingCycles),
+                        String.valueOf(syncInterval), String.valueOf(worker == 0 ? delayMillis : 0)).inheritIO().start());
+            }
+            server.serve();
+            distributedSeconds = (System.nanoTime() - start) / 1e9;
+            for (Process process : processes) {
+                process.waitFor();
+            }
+            System.out.printf("%d pushes, %.1f MB pushed, %d samples, %d workers dropped%n", server.getPushCount(), server.getReceivedBytes() / 1e6, server.getSampleCount(), server.getDroppedWorkers());
+        }
+
+        Evaluator evaluator = new Evaluator();
+        System.out.println("mode             training s  test accuracy  test MSE");
+        System.out.printf("single process   %10.3f  %12.2f%%  %.6f%n", singleSeconds, evaluator.evaluate(single.toInferenceModel(), testSet).getAccuracyPercentage(), single.calcualteMSEAverage(testSet));
+        System.out.printf("%d workers        %10.3f  %12.2f%%  %.6f%n", workers, distributedSeconds, evaluator.evaluate(network.toInferenceModel(), testSet).getAccuracyPercentage(), network.calcualteMSEAverage(testSet));
+    }
+
+    private static void runWorker(int port, int index, int workers, int trainingCycles, int syncInterval, long delayMillis) throws IOException {
+        TrainingSet set = loadSet(true);
+        int[] shard = new int[(set.getDataCount() - index + workers - 1) / workers];
+        for (int i = 0; i < shard.length; i++) {
+            shard[i] = index + i * workers;
+        }
+        TrainingOptions options = new TrainingOptions(ETA).setTrainingCycles(trainingCycles).setBatchSize(BATCH_SIZE).setPrintLog(false)
+                .setParameterServer(new InetSocketAddress("localhost", port), syncInterval);
+        if (delayMillis > 0) {
+            options.addListener(metrics -> {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        createNetwork(set).trainWithDataSet(set.subset(shard), options);
+        System.out.printf("Worker %d trained with %d samples in %.3f s.%n", index, shard.length * trainingCycles, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static Network createNetwork(TrainingSet set) {
+        int[] layerSizes = new int[HIDDEN_LAYERS.length + 2];
+        layerSizes[0] = set.getInputSize();
+        System.arraycopy(HIDDEN_LAYERS, 0, layerSizes, 1, HIDDEN_LAYERS.length);
+        layerSizes[layerSizes.length - 1] = set.getOutputSize();
+        return new Network(new Random(42), layerSizes);
+    }
+
+    private static TrainingSet loadSet(boolean training) throws IOException {
+        if (new File("src/main/resources/train-images.idx3-ubyte").exists()) {
+            return training
+                    ? MnistNumberDetector.loadTrainingSet("train-images.idx3-ubyte", "train-labels.idx1-ubyte", Precision.UINT8)
+                    : MnistNumberDetector.loadTrainingSet("t10k-images.idx3-ubyte", "t10k-labels.idx1-ubyte", Precision.UINT8);
+        }
+        return training ? SyntheticDigits.createTrainingSet(20000, new Random(1), Precision.UINT8) : SyntheticDigits.createTrainingSet(2000, new Random(2), Precision.UINT8);
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * The result of evaluating a model on a set of samples with an {@link Evaluator}: the MSE, the accuracy and the
+ * confusion matrix, from which the precision and recall of every class follow. The class of a sample is the output
+ * neuron with the highest expected output, the predicted class the one with the highest actual output.
+ */
+public final class Evaluation {
+
+    private final long count;
+    private final double mse;
+    private final long[] confusion; //[expected class * classes + predicted class]
+    private final int classes;
+
+    Evaluation(long count, double mse, long[] confusion, int classes) {
+        this.count = count;
+        this.mse = mse;
+        this.confusion = confusion.clone();
+        this.classes = classes;
+    }
+
+    /**
+     * @return How many samples were evaluated.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The average Mean Squared Error, calculated like {@link Network#calculateMSE(double[], double[])}.
+     */
+    public double getMse() {
+        return mse;
+    }
+
+    /**
+     * @return How many samples were classified correctly.
+     */
+    public long getCorrect() {
+        long correct = 0;
+        for (int c = 0; c < classes; c++) {
+            correct += confusion[c * classes + c];
+        }
+        return correct;
+    }
+
+    /**
+     * @return The share of correctly classified samples in %.
+     */
+    public double getAccuracyPercentage() {
+        return getCorrect() * 100.0 / count;
+    }
+
+    /**
+     * @return The share of wrongly classified samples in %.
+     */
+    public double getErrorPercentage() {
+        return 100 - getAccuracyPercentage();
+    }
+
+    /**
+     * @return How many samples of the expected class were classified as the predicted class.
+     */
+    public long getConfusion(int expectedClass, int predictedClass) {
+        return confusion[expectedClass * classes + predictedClass];
+    }
+
+    /**
+     * @return The share of the samples classified as the given class which really are of that class,
+     *         or NaN if no sample was classified as it.
+     */
+    public double getPrecision(int c) {
+        long predicted = 0;
+        for (int expected = 0; expected < classes; expected++) {
+            predicted += confusion[expected * classes + c];
+        }
+        return predicted == 0 ? Double.NaN : confusion[c * classes + c] / (double) predicted;
+    }
+
+    /**
+     * @return The share of the samples of the given class which were classified as it,
+     *         or NaN if there is no sample of the class.
+     */
+    public double getRecall(int c) {
+        long expected = 0;
+        for (int predicted = 0; predicted < classes; predicted++) {
+            expected += confusion[c * classes + predicted];
+        }
+        return expected == 0 ? Double.NaN : confusion[c * classes + c] / (double) expected;
+    }
+
+    public int getNumberOfClasses() {
+        return classes;
+    }
+
+    /**
+     * @return The confusion matrix with one row per expected class and the precision and recall of every class.
+     */
+    public String confusionMatrixToString() {
+        StringBuilder builder = new StringBuilder("expected\\predicted");
+        for (int predicted = 0; predicted < classes; predicted++) {
+            builder.append(String.format("%7d", predicted));
+        }
+        builder.append("   recall\n");
+        for (int expected = 0; expected < classes; expected++) {
+            builder.append(String.format("%18d", expected));
+            for (int predicted = 0; predicted < classes; predicted++) {
+                builder.append(String.format("%7d", confusion[expected * classes + predicted]));
+            }
+            builder.append(String.format("  %6.2f%%%n", getRecall(expected) * 100));
+        }
+        builder.append(String.format("%18s", "precision"));
+        for (int predicted = 0; predicted < classes; predicted++) {
+            builder.append(String.format(" %5.1f%%", getPrecision(predicted) * 100));
+        }
+        return builder.append('\n').toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d samples, MSE %s, accuracy %.2f%%", count, mse, getAccuracyPercentage());
+    }
+}
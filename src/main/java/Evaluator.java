@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Calculates the MSE, the accuracy and the confusion matrix of a model in a single pass over the samples.
+ * The samples are split into one shard per thread of the pool; every shard calculates whole batches at once with
+ * its own {@link InferenceSession} and buffers and sums up its own results, which are merged in the fixed order of
+ * the shards. So the result only depends on the parallelism of the pool and not on the scheduling of the threads.
+ */
+public class Evaluator {
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    /**
+     * Creates an evaluator which calculates on the calling thread in batches of 64 samples.
+     */
+    public Evaluator() {
+        this(null, 64);
+    }
+
+    /**
+     * @param pool The pool to calculate on, or null to calculate on the calling thread.
+     * @param batchSize How many samples every thread calculates at once.
+     */
+    public Evaluator(ForkJoinPool pool, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("The batch size has to be at least 1.");
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Evaluates the given model on all samples of the set. Every shard copies its samples straight from the set.
+     */
+    public Evaluation evaluate(InferenceModel model, TrainingSet set) {
+        checkSizes(model, set);
+        int count = set.getDataCount();
+        Shard[] shards = createShards(model, (count + batchSize - 1) / batchSize);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            int first = (int) ((long) count * i / shards.length);
+            int end = (int) ((long) count * (i + 1) / shards.length);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                for (int sample = first; sample < end; sample += batchSize) {
+                    int batch = Math.min(batchSize, end - sample);
+                    for (int j = 0; j < batch; j++) {
+                        set.copyInput(sample + j, shard.inputs, j * shard.inputSize);
+                        set.copyOutput(sample + j, shard.targets, j * shard.outputSize);
+                    }
+                    shard.evaluate(batch);
+                }
+            }));
+        }
+        run(tasks);
+        return merge(shards, count);
+    }
+
+    /**
+     * Evaluates the given model on one pass over the source. The calling thread reads one batch for every shard
+     * and then the shards calculate their batches in parallel.
+     */
+    public Evaluation evaluate(InferenceModel model, DataSource source) throws IOException {
+        checkSizes(model, source);
+        Shard[] shards = createShards(model, (source.getDataCount() + batchSize - 1) / batchSize);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(shards.length);
+        long count = 0;
+        try (DataCursor cursor = source.openCursor()) {
+            boolean end = false;
+            while (!end) {
+                tasks.clear();
+                for (Shard shard : shards) {
+                    int batch = cursor.next(shard.inputs, shard.targets, batchSize);
+                    if (batch == 0) {
+                        end = true;
+                        break;
+                    }
+                    count += batch;
+                    tasks.add(ForkJoinTask.adapt(() -> shard.evaluate(batch)));
+                }
+                run(tasks);
+            }
+        }
+        return merge(shards, count);
+    }
+
+    private static void checkSizes(InferenceModel model, DataSource source) {
+        if (source.getInputSize() != model.getInputSize() || source.getOutputSize() != model.getOutputSize()) throw new IllegalArgumentException("The sizes of the samples weren't matching the size of the model.");
+    }
+
+    private Shard[] createShards(InferenceModel model, int batches) {
+        int parallelism = pool == null ? 1 : pool.getParallelism();
+        Shard[] shards = new Shard[Math.max(1, Math.min(parallelism, batches))];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(model);
+        }
+        return shards;
+    }
+
+    private void run(List<ForkJoinTask<?>> tasks) {
+        if (pool == null || tasks.size() <= 1) {
+            for (ForkJoinTask<?> task : tasks) {
+                task.invoke();
+            }
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
+    private static Evaluation merge(Shard[] shards, long count) {
+        int classes = shards[0].outputSize;
+        double squaredError = 0;
+        long[] confusion = new long[classes * classes];
+        for (Shard shard : shards) {
+            squaredError += shard.squaredError;
+            for (int i = 0; i < confusion.length; i++) {
+                confusion[i] += shard.confusion[i];
+            }
+        }
+        return new Evaluation(count, squaredError / (2d * classes) / count, confusion, classes);
+    }
+
+    /**
+     * The session, buffers and partial results of one thread.
+     */
+    private class Shard {
+        private final InferenceSession session;
+        private final int inputSize;
+        private final int outputSize;
+        private final double[] inputs; //[sample * inputSize + neuron]
+        private final double[] targets; //[sample * outputSize + neuron]
+        private final long[] confusion; //[expected class * outputSize + predicted class]
+        private double squaredError;
+
+        private Shard(InferenceModel model) {
+            this.session = model.newSession(batchSize);
+            this.inputSize = model.getInputSize();
+            this.outputSize = model.getOutputSize();
+            this.inputs = new double[batchSize * inputSize];
+            this.targets = new double[batchSize * outputSize];
+            this.confusion = new long[outputSize * outputSize];
+        }
+
+        /**
+         * Calculates the first count samples of the buffers at once and adds up their results.
+         */
+        private void evaluate(int count) {
+            double[] outputs = session.calculateOutputs(inputs, count);
+            for (int sample = 0; sample < count; sample++) {
+                int offset = sample * outputSize;
+                int expected = 0;
+                int predicted = 0;
+                for (int neuron = 0; neuron < outputSize; neuron++) {
+                    double difference = targets[offset + neuron] - outputs[offset + neuron];
+                    squaredError += difference * difference;
+                    if (targets[offset + neuron] > targets[offset + expected]) expected = neuron;
+                    if (outputs[offset + neuron] > outputs[offset + predicted]) predicted = neuron;
+                }
+                confusion[expected * outputSize + predicted]++;
+            }
+        }
+    }
+}
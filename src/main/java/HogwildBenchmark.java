@@ -0,0 +1,39 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares how fast the MSE drops per wall-clock second when training single-threaded and when training
+ * Hogwild-style on all cores. Runs on synthetic MNIST-sized data, so no data files are needed.
+ *
+ * Arguments: [threads] [training cycles] [batch size]
+ */
+public class HogwildBenchmark {
+
+    private static final double ETA = 3.0;
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int trainingCycles = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        TrainingSet trainingSet = SyntheticDigits.createTrainingSet(20000, new Random(1));
+        TrainingSet testSet = SyntheticDigits.createTrainingSet(2000, new Random(2));
+
+        System.out.println("mode            cycle   seconds   test MSE");
+        run("single-threaded", trainingSet, testSet, trainingCycles, new TrainingOptions(ETA).setBatchSize(batchSize).setPrintLog(false));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        run("hogwild x" + threads, trainingSet, testSet, trainingCycles, new TrainingOptions(ETA).setBatchSize(batchSize).setPool(pool).setHogwild(true).setPrintLog(false));
+        pool.shutdown();
+    }
+
+    private static void run(String mode, TrainingSet trainingSet, TrainingSet testSet, int trainingCycles, TrainingOptions options) {
+        Network network = new Network(new Random(42), trainingSet.getInputSize(), 70, 35, trainingSet.getOutputSize());
+        long trainingNanos = 0;
+        for (int cycle = 1; cycle <= trainingCycles; cycle++) {
+            long start = System.nanoTime();
+            network.trainWithDataSet(trainingSet, options);
+            trainingNanos += System.nanoTime() - start;
+            System.out.printf("%-15s %5d %9.3f %10.6f%n", mode, cycle, trainingNanos / 1e9, network.calcualteMSEAverage(testSet));
+        }
+    }
+}
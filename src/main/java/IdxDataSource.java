@@ -0,0 +1,163 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Streams the samples of an IDX image and label file pair, like the MNIST files, straight from disk.
+ * A cursor reads one chunk of samples at a time into buffers of a fixed size, so the memory stays the same
+ * no matter how large the files are. The pixels become inputs of pixel / 256, the labels one-hot outputs.
+ * Shuffled cursors read the chunks in random order and shuffle the samples within every chunk.
+ */
+public class IdxDataSource implements DataSource, Closeable {
+
+    private static final int IMAGE_MAGIC_NUMBER = 2051;
+    private static final int LABEL_MAGIC_NUMBER = 2049;
+    private static final int IMAGE_HEADER_SIZE = 16;
+    private static final int LABEL_HEADER_SIZE = 8;
+    private static final double PIXEL_SCALE = 1d / 256;
+
+    private final FileChannel imageChannel;
+    private final FileChannel labelChannel;
+    private final int imageSize;
+    private final int numberOfClasses;
+    private final int dataCount;
+    private final int chunkSize;
+
+    /**
+     * @param imageFileName The system-dependent filename of the image file.
+     * @param labelFileName The system-dependent filename of the label file.
+     * @param numberOfClasses The size of the one-hot outputs.
+     * @param chunkSize How many samples a cursor reads at once.
+     */
+    public IdxDataSource(String imageFileName, String labelFileName, int numberOfClasses, int chunkSize) throws IOException {
+        if (chunkSize < 1) throw new IllegalArgumentException("The chunk size has to be at least 1.");
+        this.numberOfClasses = numberOfClasses;
+        this.chunkSize = chunkSize;
+        this.imageChannel = FileChannel.open(Paths.get(imageFileName), StandardOpenOption.READ);
+        try {
+            this.labelChannel = FileChannel.open(Paths.get(labelFileName), StandardOpenOption.READ);
+        } catch (IOException | RuntimeException e) {
+            imageChannel.close();
+            throw e;
+        }
+        try {
+            ByteBuffer imageHeader = ByteBuffer.allocate(IMAGE_HEADER_SIZE);
+            ByteBuffer labelHeader = ByteBuffer.allocate(LABEL_HEADER_SIZE);
+            readFully(imageChannel, imageHeader, 0);
+            readFully(labelChannel, labelHeader, 0);
+            if (imageHeader.getInt(0) != IMAGE_MAGIC_NUMBER) throw new IOException("The image file " + imageFileName + " should start with the number " + IMAGE_MAGIC_NUMBER + ".");
+            if (labelHeader.getInt(0) != LABEL_MAGIC_NUMBER) throw new IOException("The label file " + labelFileName + " should start with the number " + LABEL_MAGIC_NUMBER + ".");
+            this.dataCount = imageHeader.getInt(4);
+            if (labelHeader.getInt(4) != dataCount) throw new IOException("The image and label files have a different number of entries.");
+            this.imageSize = imageHeader.getInt(8) * imageHeader.getInt(12);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Reached the end of the file.");
+        }
+    }
+
+    @Override
+    public int getInputSize() {
+        return imageSize;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return numberOfClasses;
+    }
+
+    @Override
+    public int getDataCount() {
+        return dataCount;
+    }
+
+    @Override
+    public DataCursor openCursor(Random random) {
+        return new Cursor(random);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            imageChannel.close();
+        } finally {
+            labelChannel.close();
+        }
+    }
+
+    private class Cursor implements DataCursor {
+        private final ByteBuffer images = ByteBuffer.allocateDirect(chunkSize * imageSize);
+        private final ByteBuffer labels = ByteBuffer.allocateDirect(chunkSize);
+        private final Random random;
+        private final int[] chunkOrder; // null if not shuffled
+        private final int[] sampleOrder; // order of the samples within the current chunk
+        private int chunksRead;
+        private int samplesInChunk;
+        private int position; // in sampleOrder
+
+        private Cursor(Random random) {
+            this.random = random;
+            int chunkCount = (dataCount + chunkSize - 1) / chunkSize;
+            this.chunkOrder = random == null ? null : new int[chunkCount];
+            this.sampleOrder = new int[chunkSize];
+            if (chunkOrder != null) {
+                fillIndices(chunkOrder, chunkCount);
+            }
+        }
+
+        /**
+         * Fills the first count entries of indices with 0 to count - 1, in random order if the cursor shuffles.
+         */
+        private void fillIndices(int[] indices, int count) {
+            for (int i = 0; i < count; i++) {
+                int j = random == null ? i : random.nextInt(i + 1);
+                indices[i] = indices[j];
+                indices[j] = i;
+            }
+        }
+
+        @Override
+        public int next(double[] inputs, double[] targets, int max) throws IOException {
+            int count = 0;
+            while (count < max && (position < samplesInChunk || readChunk())) {
+                int sample = sampleOrder[position++];
+                int inputOffset = count * imageSize;
+                for (int pixel = 0; pixel < imageSize; pixel++) {
+                    inputs[inputOffset + pixel] = (images.get(sample * imageSize + pixel) & 0xFF) * PIXEL_SCALE;
+                }
+                int label = labels.get(sample) & 0xFF;
+                if (label >= numberOfClasses) throw new IOException("Label " + label + " is not in the range 0 to " + (numberOfClasses - 1));
+                Arrays.fill(targets, count * numberOfClasses, (count + 1) * numberOfClasses, 0);
+                targets[count * numberOfClasses + label] = 1;
+                count++;
+            }
+            return count;
+        }
+
+        private boolean readChunk() throws IOException {
+            if ((long) chunksRead * chunkSize >= dataCount) return false;
+            int chunk = chunkOrder == null ? chunksRead : chunkOrder[chunksRead];
+            chunksRead++;
+            int first = chunk * chunkSize;
+            samplesInChunk = Math.min(chunkSize, dataCount - first);
+            images.clear().limit(samplesInChunk * imageSize);
+            labels.clear().limit(samplesInChunk);
+            IdxDataSource.readFully(imageChannel, images, IMAGE_HEADER_SIZE + (long) first * imageSize);
+            IdxDataSource.readFully(labelChannel, labels, LABEL_HEADER_SIZE + first);
+            fillIndices(sampleOrder, samplesInChunk);
+            position = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * An immutable snapshot of a trained {@link Network} for inference.
+ * The model itself holds no per-call state, so it can be shared by any number of threads; every thread calculates
+ * its outputs through its own {@link InferenceSession}.
+ */
+public final class InferenceModel {
+
+    private final int numberOfLayers;
+    private final int[] layerSizes;
+    private final double[] weights; // Same layout as in Network
+    private final double[] bias;
+    private final int[] weightOffset;
+    private final int[] biasOffset;
+    private final Activation[] activations; // Same layout as in Network
+    private final SigmoidMode sigmoidMode;
+
+    InferenceModel(int[] layerSizes, Activation[] activations, double[] weights, int[] weightOffset, double[] bias, int[] biasOffset, SigmoidMode sigmoidMode) {
+        this.numberOfLayers = layerSizes.length;
+        this.layerSizes = layerSizes.clone();
+        this.activations = activations.clone();
+        this.weights = weights.clone();
+        this.bias = bias.clone();
+        this.weightOffset = weightOffset.clone();
+        this.biasOffset = biasOffset.clone();
+        this.sigmoidMode = sigmoidMode;
+    }
+
+    /**
+     * Creates a new session with its own preallocated buffers. A session must only be used by one thread at a time.
+     */
+    public InferenceSession newSession() {
+        return new InferenceSession(this, 1);
+    }
+
+    /**
+     * Creates a new session which can calculate the outputs of up to batchCapacity inputs at once.
+     */
+    public InferenceSession newSession(int batchCapacity) {
+        if (batchCapacity < 1) throw new IllegalArgumentException("The batch capacity has to be at least 1.");
+        return new InferenceSession(this, batchCapacity);
+    }
+
+    /**
+     * Creates an int8 copy of this model, see {@link QuantizedModel}.
+     *
+     * @param inputScale The value of an input byte of 1, like 1 / 256 for MNIST pixels.
+     * @param quantizedActivations Whether the hidden activations are quantized to bytes as well,
+     *                             which needs sigmoid activations for all hidden layers.
+     */
+    public QuantizedModel quantize(double inputScale, boolean quantizedActivations) {
+        return new QuantizedModel(layerSizes, activations, weights, weightOffset, bias, biasOffset, sigmoidMode, inputScale, quantizedActivations);
+    }
+
+    /**
+     * @return Whether all hidden layers use sigmoid activations, so {@link #quantize} can quantize them to bytes.
+     */
+    public boolean canQuantizeActivations() {
+        for (int layer = 0; layer < activations.length - 1; layer++) {
+            if (activations[layer] != Activation.SIGMOID) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the outputs of all layers for the inputs in activations[0] (one sample per row)
+     * and writes them into activations[1..]. The first layer skips zero inputs if they are sparse.
+     */
+    void calculateOutput(double[][] activations, int count, SparseInputs sparseInputs) {
+        for (int layer = 1; layer < numberOfLayers; layer++) {
+            int layerSize = layerSizes[layer];
+            double[] layerOutput = activations[layer];
+            for (int sample = 0; sample < count; sample++) {
+                System.arraycopy(bias, biasOffset[layer], layerOutput, sample * layerSize, layerSize);
+            }
+            if (layer == 1 && sparseInputs.collect(activations[0], count)) {
+                MatrixKernels.multiplyTransposedSparse(sparseInputs.values, sparseInputs.indices, sparseInputs.counts, weights, weightOffset[1], layerOutput, 0, count, layerSize, layerSizes[0]);
+            } else {
+                MatrixKernels.multiplyTransposed(activations[layer - 1], 0, weights, weightOffset[layer], layerOutput, 0, count, layerSize, layerSizes[layer - 1]);
+            }
+            this.activations[layer - 1].apply(layerOutput, count, layerSize, sigmoidMode);
+        }
+    }
+
+    /**
+     * @return The activation of the given layer, which mustn't be the input layer.
+     */
+    public Activation getActivation(int layer) {
+        return activations[layer - 1];
+    }
+
+    public SigmoidMode getSigmoidMode() {
+        return sigmoidMode;
+    }
+
+    public int getNumberOfLayers() {
+        return numberOfLayers;
+    }
+
+    public int getLayerSize(int layer) {
+        return layerSizes[layer];
+    }
+
+    public int getInputSize() {
+        return layerSizes[0];
+    }
+
+    public int getOutputSize() {
+        return layerSizes[numberOfLayers - 1];
+    }
+}
@@ -0,0 +1,274 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import mnist.MnistImageLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves an {@link InferenceModel} over HTTP with the JDK's built-in server:
+ * <pre>
+ * POST /classify   body: the raw input bytes (784 pixels for MNIST, 0-255 each) or an image like a PNG of at most
+ *                  280x280 pixels, which is scaled to 28x28 and read from its red channel; ?invert=true for dark
+ *                  digits on a light background.
+ *                  Answers {"digit":3,"probabilities":[...]} as JSON.
+ * GET  /metrics    the request rate and latency percentiles as text.
+ * </pre>
+ * Every request runs on a virtual thread if the JVM has them (Java 21+), otherwise on a fixed pool of threads.
+ * Requests read and decode their body first and only then borrow a preallocated {@link InferenceSession} with its
+ * buffers from a pool for the calculation, so a slow upload never holds a session and the calculation allocates
+ * nothing, no matter how many threads the server starts; when all sessions are busy, requests wait for the next one.
+ * Run the JVM with -Dsun.net.httpserver.nodelay=true, as "Main serve" does: without TCP_NODELAY, which the JDK's
+ * server doesn't set by default, Nagle's algorithm and delayed ACKs hold back small responses on keep-alive
+ * connections for up to 40 ms. The JDK reads the property once, when its first server is started.
+ */
+public class InferenceServer implements AutoCloseable {
+
+    private static final int MAX_BODY_BYTES = 1 << 18;
+    private static final int MAX_IMAGE_SIZE = 280; // pixels wide and high, 10 times the 28x28 of MNIST
+    private static final double MAX_PIXEL_BRIGHTNESS = 256.0;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private final InferenceModel model;
+    private final boolean softmaxOutput;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final BlockingQueue<Slot> slots;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private long lastMetricsNanos = startNanos; // guarded by this
+    private long lastMetricsRequests;
+
+    /**
+     * Starts serving the given model.
+     *
+     * @param model The model to classify with.
+     * @param port The port to listen on, or 0 for any free port, see {@link #getPort()}.
+     * @param sessions How many requests are classified at once at most.
+     */
+    public InferenceServer(InferenceModel model, int port, int sessions) throws IOException {
+        if (sessions < 1) throw new IllegalArgumentException("The server needs at least 1 session.");
+        this.model = model;
+        this.softmaxOutput = model.getActivation(model.getNumberOfLayers() - 1) == Activation.SOFTMAX;
+        this.slots = new ArrayBlockingQueue<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            slots.add(new Slot());
+        }
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : Executors.newFixedThreadPool(sessions, runnable -> {
+            Thread thread = new Thread(runnable, "inference-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/classify", this::classify);
+        server.createContext("/metrics", this::metrics);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return An executor which starts a virtual thread per task, or null if the JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private void classify(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.incrementAndGet();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Only POST is supported.", "text/plain");
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (body.length > MAX_BODY_BYTES) {
+                respond(exchange, 413, "The body is larger than " + MAX_BODY_BYTES + " bytes.", "text/plain");
+                return;
+            }
+            double[] pixels = null; // of an image, decoded before a session is borrowed
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith("image/") || startsWith(body, PNG_SIGNATURE)) {
+                if (model.getInputSize() != 28 * 28) {
+                    respond(exchange, 400, "Images are only supported for models with 28x28 inputs.", "text/plain");
+                    return;
+                }
+                try {
+                    pixels = MnistImageLoader.intArrayToDoubleArray(MnistImageLoader.bufferedImageRedToArray(MnistImageLoader.loadImage(new ByteArrayInputStream(body), MAX_IMAGE_SIZE)));
+                } catch (IOException e) {
+                    respond(exchange, 400, e.getMessage(), "text/plain");
+                    return;
+                }
+            } else if (body.length != model.getInputSize()) {
+                respond(exchange, 400, "Expected " + model.getInputSize() + " input bytes, got " + body.length + ".", "text/plain");
+                return;
+            }
+            String query = exchange.getRequestURI().getQuery();
+            boolean invert = query != null && query.contains("invert=true");
+
+            Slot slot;
+            try {
+                slot = slots.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "The server is shutting down.", "text/plain");
+                return;
+            }
+            String json;
+            try {
+                if (pixels != null) {
+                    System.arraycopy(pixels, 0, slot.input, 0, pixels.length);
+                } else {
+                    for (int i = 0; i < body.length; i++) {
+                        slot.input[i] = (body[i] & 0xFF) / MAX_PIXEL_BRIGHTNESS;
+                    }
+                }
+                if (invert) MnistImageLoader.invert(slot.input);
+                json = toJson(slot.session.calculateOutput(slot.input), slot.json);
+            } finally {
+                slots.add(slot);
+            }
+            respond(exchange, 200, json, "application/json");
+        } finally {
+            exchange.close();
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The outputs of a softmax layer are the probabilities already, other outputs are normalised to add up to 1.
+     */
+    private String toJson(double[] output, StringBuilder json) {
+        double sum = 0;
+        for (double value : output) {
+            sum += value;
+        }
+        double scale = softmaxOutput || sum <= 0 ? 1 : 1 / sum;
+        json.setLength(0);
+        json.append("{\"digit\":").append(ArrayHelperMethods.indexOfHighestValue(output)).append(",\"probabilities\":[");
+        for (int i = 0; i < output.length; i++) {
+            if (i > 0) json.append(',');
+            json.append((float) (output[i] * scale));
+        }
+        return json.append("]}").toString();
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try {
+            long now = System.nanoTime();
+            long total = requests.get();
+            double recentRate;
+            synchronized (this) {
+                recentRate = (total - lastMetricsRequests) / ((now - lastMetricsNanos) / 1e9);
+                lastMetricsNanos = now;
+                lastMetricsRequests = total;
+            }
+            String text = "requests " + total + "\n"
+                    + "errors " + errors.get() + "\n"
+                    + "requests_per_second " + String.format("%.1f", total / ((now - startNanos) / 1e9)) + "\n"
+                    + "requests_per_second_since_last_metrics " + String.format("%.1f", recentRate) + "\n"
+                    + "latency_p50_us " + latency.getPercentile(50) / 1000 + "\n"
+                    + "latency_p90_us " + latency.getPercentile(90) / 1000 + "\n"
+                    + "latency_p99_us " + latency.getPercentile(99) / 1000 + "\n"
+                    + "latency_p999_us " + latency.getPercentile(99.9) / 1000 + "\n"
+                    + "sessions_free " + slots.size() + "\n"
+                    + "virtual_threads " + virtualThreads + "\n";
+            respond(exchange, 200, text, "text/plain");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String body, String contentType) throws IOException {
+        if (status >= 400) errors.incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for running ones and stops the threads.
+     * If the calling thread is interrupted while waiting, it stops waiting and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads a network with {@link NetworkCheckpoint#load} and serves it until the process is stopped.
+     * Started with "Main serve", which sets -Dsun.net.httpserver.nodelay=true unless it was given.
+     *
+     * Arguments: [checkpoint] [port] [sessions]
+     */
+    public static void main(String[] args) throws IOException {
+        String checkpoint = args.length > 0 ? args[0] : "mnist-network.checkpoint";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+        InferenceServer server = new InferenceServer(NetworkCheckpoint.load(Paths.get(checkpoint)).toInferenceModel(), port, sessions);
+        System.out.println("Serving " + checkpoint + " on http://localhost:" + server.getPort() + "/classify"
+                + (server.isVirtualThreads() ? " with virtual threads." : " with " + sessions + " threads."));
+    }
+
+    /**
+     * A session of the model with the buffers of one request.
+     */
+    private class Slot {
+        private final InferenceSession session = model.newSession();
+        private final double[] input = new double[model.getInputSize()];
+        private final StringBuilder json = new StringBuilder();
+    }
+}
@@ -0,0 +1,112 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of an {@link InferenceServer} on localhost: trains a small network on synthetic digits,
+ * serves it and lets client threads post raw 784-byte images over keep-alive connections for a while. Classifies
+ * one image as PNG as well and prints the metrics of the server at the end. Sets -Dsun.net.httpserver.nodelay=true
+ * unless it was given, see {@link InferenceServer}.
+ *
+ * Arguments: [seconds] [client threads] [sessions]
+ */
+public class InferenceServerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 2;
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        TrainingSet set = SyntheticDigits.createTrainingSet(10000, new Random(1), Precision.UINT8);
+        Network network = new Network(new Random(42), Activation.of(Activation.RELU, Activation.SOFTMAX, 4), set.getInputSize(), 70, 35, set.getOutputSize());
+        network.trainWithDataSet(set, new TrainingOptions(0.03).setPrintLog(false));
+        byte[][] images = new byte[100][set.getInputSize()];
+        double[] input = new double[set.getInputSize()];
+        for (int i = 0; i < images.length; i++) {
+            set.copyInput(i, input, 0);
+            for (int pixel = 0; pixel < input.length; pixel++) {
+                images[i][pixel] = (byte) Math.round(input[pixel] * 256);
+            }
+        }
+
+        try (InferenceServer server = new InferenceServer(network.toInferenceModel(), 0, sessions)) {
+            String base = "http://localhost:" + server.getPort();
+            System.out.println("PNG of a " + set.getLabel(0) + ": " + post(base + "/classify", toPng(images[0]), "image/png"));
+            System.out.println("Raw " + set.getLabel(1) + ": " + post(base + "/classify", images[1], "application/octet-stream"));
+
+            AtomicLong responses = new AtomicLong();
+            long end = System.nanoTime() + seconds * 1_000_000_000L;
+            List<Thread> threads = new ArrayList<>(clients);
+            for (int client = 0; client < clients; client++) {
+                int first = client;
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int i = first; System.nanoTime() < end; i++) {
+                            post(base + "/classify", images[i % images.length], "application/octet-stream");
+                            responses.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        System.out.println("Client failed: " + e);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            System.out.printf("%d clients: %.0f requests/s%n", clients, responses.get() / (double) seconds);
+            System.out.print(get(base + "/metrics"));
+        }
+    }
+
+    private static String post(String url, byte[] body, String contentType) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", contentType);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        return read(connection);
+    }
+
+    private static String get(String url) throws IOException {
+        return read((HttpURLConnection) new URL(url).openConnection());
+    }
+
+    /**
+     * Reads the whole response, so the connection can be kept alive and reused.
+     */
+    private static String read(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] toPng(byte[] pixels) throws IOException {
+        BufferedImage image = new BufferedImage(28, 28, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 28; y++) {
+            for (int x = 0; x < 28; x++) {
+                int value = pixels[y * 28 + x] & 0xFF;
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+}
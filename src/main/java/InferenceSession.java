@@ -0,0 +1,83 @@
+/**
+ * Calculates outputs of an {@link InferenceModel} without allocating anything per call.
+ * A session owns the activation buffers of all layers, so it is not thread-safe: every thread needs its own session.
+ */
+public final class InferenceSession {
+
+    private final InferenceModel model;
+    private final int batchCapacity;
+    private final double[][] activations; //[layers][sample * neurons in layer + neuron]
+    private final SparseInputs sparseInputs;
+
+    InferenceSession(InferenceModel model, int batchCapacity) {
+        this.model = model;
+        this.batchCapacity = batchCapacity;
+        this.activations = new double[model.getNumberOfLayers()][];
+        for (int layer = 0; layer < activations.length; layer++) {
+            activations[layer] = new double[batchCapacity * model.getLayerSize(layer)];
+        }
+        this.sparseInputs = new SparseInputs(batchCapacity, model.getInputSize());
+    }
+
+    /**
+     * Calculates the output for the given input.
+     *
+     * @param input The input to calculate the output.
+     * @return The output of the last layer. The array belongs to this session and is overwritten by the next call.
+     */
+    public double[] calculateOutput(double[] input) {
+        if (input.length != model.getInputSize()) throw new IllegalArgumentException("The size of the input did not match the size of the input layer.");
+        return calculateOutput(input, 0);
+    }
+
+    /**
+     * Calculates the output for the input which starts at the given offset of the array.
+     *
+     * @return The output of the last layer. The array belongs to this session and is overwritten by the next call.
+     */
+    public double[] calculateOutput(double[] inputs, int offset) {
+        if (offset < 0 || offset + model.getInputSize() > inputs.length) throw new IllegalArgumentException("The size of the input did not match the size of the input layer.");
+        System.arraycopy(inputs, offset, activations[0], 0, model.getInputSize());
+        model.calculateOutput(activations, 1, sparseInputs);
+        return activations[activations.length - 1];
+    }
+
+    /**
+     * Calculates the outputs for a whole batch of inputs at once.
+     *
+     * @param inputs The inputs, one after another ([sample * input size + pixel]).
+     * @param count How many inputs there are, at most the batch capacity of this session.
+     * @return The outputs, one after another ([sample * output size + neuron]). The array belongs to this session
+     *         and is overwritten by the next call.
+     */
+    public double[] calculateOutputs(double[] inputs, int count) {
+        if (count < 0 || count > batchCapacity) throw new IllegalArgumentException("The batch size " + count + " exceeds the capacity of " + batchCapacity + ".");
+        if (inputs.length < count * model.getInputSize()) throw new IllegalArgumentException("The size of the inputs did not match the size of the input layer.");
+        System.arraycopy(inputs, 0, activations[0], 0, count * model.getInputSize());
+        model.calculateOutput(activations, count, sparseInputs);
+        return activations[activations.length - 1];
+    }
+
+    /**
+     * Calculates the output for the given input and copies it into the given result array.
+     */
+    public void calculateOutput(double[] input, double[] result) {
+        if (result.length != model.getOutputSize()) throw new IllegalArgumentException("The size of the result did not match the size of the output layer.");
+        System.arraycopy(calculateOutput(input), 0, result, 0, result.length);
+    }
+
+    /**
+     * @return The index of the output neuron with the highest output for the given input.
+     */
+    public int classify(double[] input) {
+        return ArrayHelperMethods.indexOfHighestValue(calculateOutput(input));
+    }
+
+    public int getBatchCapacity() {
+        return batchCapacity;
+    }
+
+    public InferenceModel getModel() {
+        return model;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * The innermost loops of the {@link MatrixKernels}. The implementation is chosen once at startup, so every call
+ * site only ever sees one implementation and the JIT can inline it.
+ *
+ * @see ScalarKernelBackend
+ */
+interface KernelBackend {
+
+    /**
+     * @return The sum of a[aOffset + i] * b[bOffset + i] for i in [0, length).
+     */
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * Like {@link #dot(double[], int, double[], int, int)} in single precision.
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * @return The sum of a[aOffset + i] * (b[bOffset + i] & 0xFF) for i in [0, length): signed bytes times
+     *         unsigned bytes, summed up exactly as long as length * 128 * 255 fits into an int.
+     */
+    int dotBytes(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    /**
+     * Writes the {@link #dotBytes} of four rows of a with one row of b to c[cOffset], ..., c[cOffset + 3].
+     * The rows of a start at aOffset, aOffset + aStride, aOffset + 2 * aStride and aOffset + 3 * aStride.
+     */
+    void dot4Bytes(byte[] a, int aOffset, int aStride, byte[] b, int bOffset, int length, int[] c, int cOffset);
+
+    /**
+     * Writes the dot products of four rows of the signed bytes a with one row of b to c[cOffset], ..., c[cOffset + 3],
+     * with the rows of a like {@link #dot4Bytes(byte[], int, int, byte[], int, int, int[], int)}.
+     */
+    void dot4Bytes(byte[] a, int aOffset, int aStride, double[] b, int bOffset, int length, double[] c, int cOffset);
+
+    /**
+     * Adds the dot products of one row of a with four rows of b to c[cOffset], ..., c[cOffset + 3].
+     * The rows of b start at bOffset, bOffset + bStride, bOffset + 2 * bStride and bOffset + 3 * bStride.
+     */
+    void dot4(double[] a, int aOffset, double[] b, int bOffset, int bStride, int length, double[] c, int cOffset);
+
+    /**
+     * Like {@link #dot4(double[], int, double[], int, int, int, double[], int)} in single precision.
+     */
+    void dot4(float[] a, int aOffset, float[] b, int bOffset, int bStride, int length, float[] c, int cOffset);
+
+    /**
+     * c[i] += the sum of A[indices[p]][i] * values[p] for p in [0, count) and i in [0, n): a sparse vector, given as
+     * its nonzero values in [0, 255] and their indices, times the signed bytes A[][n] which start at aOffset.
+     * Summed up exactly as long as count * 128 * 255 fits into an int.
+     */
+    void multiplySparseBytes(int[] values, int[] indices, int count, byte[] a, int aOffset, int[] c, int n);
+
+    /**
+     * y[yOffset + i] += alpha * x[xOffset + i] for i in [0, length).
+     */
+    void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    /**
+     * Like {@link #axpy(double, double[], int, double[], int, int)} in single precision.
+     */
+    void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    /**
+     * Passes the error signal of a neuron back through its row of weights and updates the row in the same sweep:
+     * for i in [0, length), error[errorOffset + i] += alpha * w[wOffset + i] with the weight from before the update,
+     * then w[wOffset + i] += beta * x[xOffset + i].
+     */
+    void backpropRow(double alpha, double beta, double[] w, int wOffset, double[] x, int xOffset, double[] error, int errorOffset, int length);
+
+    /**
+     * Like {@link #backpropRow(double, double, double[], int, double[], int, double[], int, int)} in single precision.
+     */
+    void backpropRow(float alpha, float beta, float[] w, int wOffset, float[] x, int xOffset, float[] error, int errorOffset, int length);
+
+    /**
+     * Replaces every value in [offset, offset + length) with its sigmoid.
+     */
+    void sigmoid(double[] values, int offset, int length);
+
+    /**
+     * Like {@link #sigmoid(double[], int, int)} in single precision.
+     */
+    void sigmoid(float[] values, int offset, int length);
+
+    String getName();
+}
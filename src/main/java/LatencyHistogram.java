@@ -0,0 +1,71 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, for percentiles like p50 and p99.
+ * Every power of two is split into 16 linear buckets, so a percentile is off by at most 1/16 (about 6%)
+ * of its value. Durations of up to 2^45 ns (about 9 hours) are recorded, longer ones end up in the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT + 2) * SUB_BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile The percentile between 0 and 100, e.g. 99 for p99.
+     * @return The upper bound in nanoseconds of the bucket which contains the given percentile, or 0 if nothing
+     *         was recorded yet.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("The percentile has to be between 0 and 100.");
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return upperBoundOf(i);
+        }
+        return upperBoundOf(snapshot.length - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        if (exponent > MAX_EXPONENT) return (MAX_EXPONENT + 2) * SUB_BUCKETS - 1;
+        int mantissa = (int) (nanos >>> exponent); // between SUB_BUCKETS and 2 * SUB_BUCKETS - 1
+        return (exponent + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS - 1;
+        int mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((long) (mantissa + 1) << exponent) - 1;
+    }
+}
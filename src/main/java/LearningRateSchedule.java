@@ -0,0 +1,50 @@
+/**
+ * Changes the learning rate over the course of a training, see {@link TrainingOptions#setSchedule}.
+ * The rate is looked up before every batch; Hogwild training looks it up once per training cycle.
+ */
+@FunctionalInterface
+public interface LearningRateSchedule {
+
+    /**
+     * @param eta The learning rate of the options.
+     * @param batch How many batches were trained with before, over all training cycles.
+     * @param batchesPerCycle How many batches one training cycle has.
+     * @param totalBatches How many batches the whole training has.
+     * @return The learning rate of the batch.
+     */
+    double getEta(double eta, long batch, long batchesPerCycle, long totalBatches);
+
+    /**
+     * Always the learning rate of the options.
+     */
+    static LearningRateSchedule constant() {
+        return (eta, batch, batchesPerCycle, totalBatches) -> eta;
+    }
+
+    /**
+     * Multiplies the learning rate by gamma after every given number of training cycles.
+     */
+    static LearningRateSchedule step(int cycles, double gamma) {
+        if (cycles < 1) throw new IllegalArgumentException("The step has to be at least one training cycle.");
+        return (eta, batch, batchesPerCycle, totalBatches) -> eta * Math.pow(gamma, batch / (cycles * batchesPerCycle));
+    }
+
+    /**
+     * Lowers the learning rate along half a cosine wave from the rate of the options at the first batch
+     * to minEta at the last one.
+     */
+    static LearningRateSchedule cosine(double minEta) {
+        return (eta, batch, batchesPerCycle, totalBatches) -> minEta + (eta - minEta) * (1 + Math.cos(Math.PI * batch / Math.max(1, totalBatches - 1))) / 2;
+    }
+
+    /**
+     * Raises the learning rate linearly from almost 0 to the rate of this schedule over the first given number
+     * of batches, which keeps large early gradients from throwing the weights off, and follows this schedule after.
+     */
+    default LearningRateSchedule withWarmup(long warmupBatches) {
+        return (eta, batch, batchesPerCycle, totalBatches) -> {
+            double scheduled = getEta(eta, batch, batchesPerCycle, totalBatches);
+            return batch < warmupBatches ? scheduled * (batch + 1) / warmupBatches : scheduled;
+        };
+    }
+}
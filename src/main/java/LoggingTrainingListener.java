@@ -0,0 +1,10 @@
+/**
+ * Prints the metrics of every training cycle on a background thread.
+ */
+public class LoggingTrainingListener implements TrainingListener {
+
+    @Override
+    public void cycleCompleted(TrainingMetrics metrics) {
+        AsyncLog.println(metrics.toString());
+    }
+}
@@ -1,11 +1,23 @@
 import java.io.IOException;
+import java.util.Arrays;
 
 public class Main {
     
     
+    /**
+     * Trains and tests the MNIST detector, with the argument relu the one with ReLU hidden layers and a softmax
+     * output, or with the arguments serve [checkpoint] [port] [sessions] serves the trained network over HTTP,
+     * see {@link InferenceServer}.
+     */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("serve")) {
+            // Before the first HttpServer starts, see InferenceServer
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+            InferenceServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
     
-        MnistNumberDetector numberDetector = new MnistNumberDetector();
+        MnistNumberDetector numberDetector = new MnistNumberDetector(args.length > 0 && args[0].equals("relu"));
         
     }
     
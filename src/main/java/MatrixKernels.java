@@ -0,0 +1,371 @@
+/**
+ * Cache-blocked matrix kernels working on flat row-major double or float arrays.
+ * Every matrix is given as an array plus the offset of its first element, so the kernels can work directly
+ * on a layer inside the flat weight buffer of a {@link Network}.
+ * All kernels accumulate into the result (C += ...), the caller has to clear or initialise C beforehand.
+ * The inner loops of the double, float and byte kernels run on a {@link KernelBackend}: the Vector API backend if it
+ * was compiled in (profile "vector") and the JVM runs with --add-modules jdk.incubator.vector, the scalar one otherwise.
+ * Starting the JVM with -Dnetwork.kernels=scalar forces the scalar backend.
+ */
+public final class MatrixKernels {
+
+    private static final KernelBackend BACKEND = selectBackend();
+
+    private static final int BLOCK_K = 256; // Length of the row chunks which are kept in L1 while streaming over the other matrix.
+    private static final int BLOCK_N = 32; // Number of rows of B which are reused for all rows of A.
+
+    private MatrixKernels() {
+    }
+
+    private static KernelBackend selectBackend() {
+        if (!"scalar".equals(System.getProperty("network.kernels"))) {
+            try {
+                return (KernelBackend) Class.forName("VectorKernelBackend").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not compiled in, or the incubator module isn't available: fall back to the scalar loops.
+            }
+        }
+        return new ScalarKernelBackend();
+    }
+
+    /**
+     * @return The name of the backend the kernels run on.
+     */
+    public static String getBackendName() {
+        return BACKEND.getName();
+    }
+
+    /**
+     * @return The sum of a[aOffset + i] * b[bOffset + i] for i in [0, length).
+     */
+    public static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        return BACKEND.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * @return The sum of a[aOffset + i] * (b[bOffset + i] & 0xFF) for i in [0, length), signed times unsigned bytes.
+     */
+    public static int dotBytes(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return BACKEND.dotBytes(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * c[i] = {@link #dotBytes} of row i of the signed bytes A[n][k] with the unsigned bytes b, for i in [0, n).
+     * Four rows at once, so every byte of b is widened once for four products.
+     */
+    public static void multiplyBytes(byte[] a, int aOffset, byte[] b, int bOffset, int[] c, int n, int k) {
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            BACKEND.dot4Bytes(a, aOffset + i * k, k, b, bOffset, k, c, i);
+        }
+        for (; i < n; i++) {
+            c[i] = BACKEND.dotBytes(a, aOffset + i * k, b, bOffset, k);
+        }
+    }
+
+    /**
+     * c[i] = the dot product of row i of the signed bytes A[n][k] with the doubles b, for i in [0, n).
+     */
+    public static void multiplyBytes(byte[] a, int aOffset, double[] b, int bOffset, double[] c, int n, int k) {
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            BACKEND.dot4Bytes(a, aOffset + i * k, k, b, bOffset, k, c, i);
+        }
+        for (; i < n; i++) {
+            int aRow = aOffset + i * k;
+            double sum = 0;
+            for (int p = 0; p < k; p++) {
+                sum += a[aRow + p] * b[bOffset + p];
+            }
+            c[i] = sum;
+        }
+    }
+
+    /**
+     * c[i] += the sum of A[indices[p]][i] * values[p] for p in [0, count) and i in [0, n): a sparse vector, given as
+     * its nonzero values in [0, 255] and their indices, times the signed bytes A[][n] which start at aOffset.
+     * Every nonzero adds its row of A, which is contiguous, unlike the columns of {@link #multiplyTransposedSparse}.
+     * Used for the first layer of a {@link QuantizedModel}.
+     */
+    public static void multiplySparseBytes(int[] values, int[] indices, int count, byte[] a, int aOffset, int[] c, int n) {
+        BACKEND.multiplySparseBytes(values, indices, count, a, aOffset, c, n);
+    }
+
+    /**
+     * y[yOffset + i] += alpha * x[xOffset + i] for i in [0, length).
+     */
+    public static void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        BACKEND.axpy(alpha, x, xOffset, y, yOffset, length);
+    }
+
+    /**
+     * Like {@link #axpy(double, double[], int, double[], int, int)} in single precision.
+     */
+    public static void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        BACKEND.axpy(alpha, x, xOffset, y, yOffset, length);
+    }
+
+    /**
+     * error[errorOffset + i] += alpha * w[wOffset + i], then w[wOffset + i] += beta * x[xOffset + i]
+     * for i in [0, length), reading and writing every weight once.
+     */
+    public static void backpropRow(double alpha, double beta, double[] w, int wOffset, double[] x, int xOffset, double[] error, int errorOffset, int length) {
+        BACKEND.backpropRow(alpha, beta, w, wOffset, x, xOffset, error, errorOffset, length);
+    }
+
+    /**
+     * Like {@link #backpropRow(double, double, double[], int, double[], int, double[], int, int)} in single precision.
+     */
+    public static void backpropRow(float alpha, float beta, float[] w, int wOffset, float[] x, int xOffset, float[] error, int errorOffset, int length) {
+        BACKEND.backpropRow(alpha, beta, w, wOffset, x, xOffset, error, errorOffset, length);
+    }
+
+    /**
+     * Replaces every value in [offset, offset + length) with its sigmoid.
+     */
+    public static void sigmoid(double[] values, int offset, int length) {
+        BACKEND.sigmoid(values, offset, length);
+    }
+
+    /**
+     * Like {@link #sigmoid(double[], int, int)} in single precision.
+     */
+    public static void sigmoid(float[] values, int offset, int length) {
+        BACKEND.sigmoid(values, offset, length);
+    }
+
+    /**
+     * C[m][n] += A[m][k] * B[n][k]^T
+     * Used for the forward pass, where A holds one sample per row and B is the weight matrix of a layer.
+     */
+    public static void multiplyTransposed(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int m, int n, int k) {
+        for (int kStart = 0; kStart < k; kStart += BLOCK_K) {
+            int kLength = Math.min(k, kStart + BLOCK_K) - kStart;
+            for (int nStart = 0; nStart < n; nStart += BLOCK_N) {
+                int nEnd = Math.min(n, nStart + BLOCK_N);
+                for (int i = 0; i < m; i++) {
+                    int aRow = aOffset + i * k + kStart;
+                    int cRow = cOffset + i * n;
+                    int j = nStart;
+                    // Four rows of B at once, so every element of A is loaded once for four products.
+                    for (; j + 3 < nEnd; j += 4) {
+                        BACKEND.dot4(a, aRow, b, bOffset + j * k + kStart, k, kLength, c, cRow + j);
+                    }
+                    for (; j < nEnd; j++) {
+                        c[cRow + j] += BACKEND.dot(a, aRow, b, bOffset + j * k + kStart, kLength);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[m][k] * B[k][n]
+     * Used to propagate the error signals back through the weight matrix B of a layer.
+     */
+    public static void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int m, int n, int k) {
+        for (int nStart = 0; nStart < n; nStart += BLOCK_K) {
+            int nLength = Math.min(n, nStart + BLOCK_K) - nStart;
+            for (int i = 0; i < m; i++) {
+                int aRow = aOffset + i * k;
+                int cRow = cOffset + i * n + nStart;
+                for (int p = 0; p < k; p++) {
+                    BACKEND.axpy(a[aRow + p], b, bOffset + p * n + nStart, c, cRow, nLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[k][m]^T * B[k][n]
+     * Used to accumulate the weight gradients, where A holds the error signals and B the inputs of a layer
+     * (one sample per row each).
+     */
+    public static void multiplyTransposedA(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int m, int n, int k) {
+        for (int nStart = 0; nStart < n; nStart += BLOCK_K) {
+            int nLength = Math.min(n, nStart + BLOCK_K) - nStart;
+            for (int i = 0; i < m; i++) {
+                int cRow = cOffset + i * n + nStart;
+                for (int p = 0; p < k; p++) {
+                    BACKEND.axpy(a[aOffset + p * m + i], b, bOffset + p * n + nStart, c, cRow, nLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[m][k] * B[n][k]^T for a sparse A, which is given as the nonzero values of every row and their
+     * column indices: row i has counts[i] of them, starting at i * k in values and indices.
+     * Used for the forward pass of the first layer, see {@link SparseInputs}. Runs the scalar loops on every backend:
+     * the same four-row loop with the gathering {@code DoubleVector.fromArray(species, b, offset, indices, p)} of JDK 17
+     * was at most 10% faster with 256-bit vectors for 150 nonzeros of 784 inputs, 15% slower for 400 nonzeros, and
+     * 20 to 45 times slower with 128-bit vectors, where the gather isn't intrinsified.
+     */
+    public static void multiplyTransposedSparse(double[] values, int[] indices, int[] counts, double[] b, int bOffset, double[] c, int cOffset, int m, int n, int k) {
+        for (int i = 0; i < m; i++) {
+            int aRow = i * k;
+            int aEnd = aRow + counts[i];
+            int cRow = cOffset + i * n;
+            int j = 0;
+            // Four rows of B at once, so every nonzero of A is loaded once for four products.
+            for (; j + 3 < n; j += 4) {
+                int b0 = bOffset + j * k;
+                int b1 = b0 + k;
+                int b2 = b1 + k;
+                int b3 = b2 + k;
+                double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                for (int p = aRow; p < aEnd; p++) {
+                    int column = indices[p];
+                    double value = values[p];
+                    sum0 += value * b[b0 + column];
+                    sum1 += value * b[b1 + column];
+                    sum2 += value * b[b2 + column];
+                    sum3 += value * b[b3 + column];
+                }
+                c[cRow + j] += sum0;
+                c[cRow + j + 1] += sum1;
+                c[cRow + j + 2] += sum2;
+                c[cRow + j + 3] += sum3;
+            }
+            for (; j < n; j++) {
+                int bRow = bOffset + j * k;
+                double sum = 0;
+                for (int p = aRow; p < aEnd; p++) {
+                    sum += values[p] * b[bRow + indices[p]];
+                }
+                c[cRow + j] += sum;
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[k][m]^T * B[k][n] for a sparse B, which is given like A of
+     * {@link #multiplyTransposedSparse}: row p has counts[p] nonzero values, starting at p * n.
+     * Used to accumulate the weight gradients of the first layer; only the columns of the nonzero inputs are touched.
+     */
+    public static void multiplyTransposedASparse(double[] a, int aOffset, double[] values, int[] indices, int[] counts, double[] c, int cOffset, int m, int n, int k) {
+        for (int p = 0; p < k; p++) {
+            int bRow = p * n;
+            int bEnd = bRow + counts[p];
+            for (int i = 0; i < m; i++) {
+                double value = a[aOffset + p * m + i];
+                if (value == 0) continue;
+                int cRow = cOffset + i * n;
+                for (int q = bRow; q < bEnd; q++) {
+                    c[cRow + indices[q]] += value * values[q];
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[m][k] * B[n][k]^T in single precision, see the double version.
+     */
+    public static void multiplyTransposed(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int m, int n, int k) {
+        for (int kStart = 0; kStart < k; kStart += BLOCK_K) {
+            int kLength = Math.min(k, kStart + BLOCK_K) - kStart;
+            for (int nStart = 0; nStart < n; nStart += BLOCK_N) {
+                int nEnd = Math.min(n, nStart + BLOCK_N);
+                for (int i = 0; i < m; i++) {
+                    int aRow = aOffset + i * k + kStart;
+                    int cRow = cOffset + i * n;
+                    int j = nStart;
+                    for (; j + 3 < nEnd; j += 4) {
+                        BACKEND.dot4(a, aRow, b, bOffset + j * k + kStart, k, kLength, c, cRow + j);
+                    }
+                    for (; j < nEnd; j++) {
+                        c[cRow + j] += BACKEND.dot(a, aRow, b, bOffset + j * k + kStart, kLength);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[m][k] * B[k][n] in single precision, see the double version.
+     */
+    public static void multiply(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int m, int n, int k) {
+        for (int nStart = 0; nStart < n; nStart += BLOCK_K) {
+            int nLength = Math.min(n, nStart + BLOCK_K) - nStart;
+            for (int i = 0; i < m; i++) {
+                int aRow = aOffset + i * k;
+                int cRow = cOffset + i * n + nStart;
+                for (int p = 0; p < k; p++) {
+                    BACKEND.axpy(a[aRow + p], b, bOffset + p * n + nStart, c, cRow, nLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[k][m]^T * B[k][n] in single precision, see the double version.
+     */
+    public static void multiplyTransposedA(float[] a, int aOffset, float[] b, int bOffset, float[] c, int cOffset, int m, int n, int k) {
+        for (int nStart = 0; nStart < n; nStart += BLOCK_K) {
+            int nLength = Math.min(n, nStart + BLOCK_K) - nStart;
+            for (int i = 0; i < m; i++) {
+                int cRow = cOffset + i * n + nStart;
+                for (int p = 0; p < k; p++) {
+                    BACKEND.axpy(a[aOffset + p * m + i], b, bOffset + p * n + nStart, c, cRow, nLength);
+                }
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[m][k] * B[n][k]^T for a sparse A in single precision, see the double version.
+     */
+    public static void multiplyTransposedSparse(float[] values, int[] indices, int[] counts, float[] b, int bOffset, float[] c, int cOffset, int m, int n, int k) {
+        for (int i = 0; i < m; i++) {
+            int aRow = i * k;
+            int aEnd = aRow + counts[i];
+            int cRow = cOffset + i * n;
+            int j = 0;
+            for (; j + 3 < n; j += 4) {
+                int b0 = bOffset + j * k;
+                int b1 = b0 + k;
+                int b2 = b1 + k;
+                int b3 = b2 + k;
+                float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                for (int p = aRow; p < aEnd; p++) {
+                    int column = indices[p];
+                    float value = values[p];
+                    sum0 += value * b[b0 + column];
+                    sum1 += value * b[b1 + column];
+                    sum2 += value * b[b2 + column];
+                    sum3 += value * b[b3 + column];
+                }
+                c[cRow + j] += sum0;
+                c[cRow + j + 1] += sum1;
+                c[cRow + j + 2] += sum2;
+                c[cRow + j + 3] += sum3;
+            }
+            for (; j < n; j++) {
+                int bRow = bOffset + j * k;
+                float sum = 0;
+                for (int p = aRow; p < aEnd; p++) {
+                    sum += values[p] * b[bRow + indices[p]];
+                }
+                c[cRow + j] += sum;
+            }
+        }
+    }
+
+    /**
+     * C[m][n] += A[k][m]^T * B[k][n] for a sparse B in single precision, see the double version.
+     */
+    public static void multiplyTransposedASparse(float[] a, int aOffset, float[] values, int[] indices, int[] counts, float[] c, int cOffset, int m, int n, int k) {
+        for (int p = 0; p < k; p++) {
+            int bRow = p * n;
+            int bEnd = bRow + counts[p];
+            for (int i = 0; i < m; i++) {
+                float value = a[aOffset + p * m + i];
+                if (value == 0) continue;
+                int cRow = cOffset + i * n;
+                for (int q = bRow; q < bEnd; q++) {
+                    c[cRow + indices[q]] += value * values[q];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Classifies inputs from any number of threads by coalescing them into batches.
+ * Submitted inputs are queued; a single worker thread takes up to maxBatchSize of them, waiting at most maxWait
+ * after the first one arrived, calculates the whole batch with one batched forward pass and completes the futures.
+ * Larger batches give more throughput, a shorter wait gives lower latency.
+ */
+public class MicroBatchingEngine implements AutoCloseable {
+
+    private final InferenceSession session;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> queue;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    private final double[] batchInputs;
+    private final List<Request> batch;
+
+    private final AtomicLongArray batchSizeCounts; //[batch size]
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param model The model to classify with.
+     * @param maxBatchSize How many inputs are calculated at once at most.
+     * @param maxWait How long to wait for more inputs after the first input of a batch arrived.
+     * @param unit The unit of maxWait.
+     * @param queueCapacity How many inputs may wait at most, further submits are rejected.
+     */
+    public MicroBatchingEngine(InferenceModel model, int maxBatchSize, long maxWait, TimeUnit unit, int queueCapacity) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("The batch size has to be at least 1.");
+        this.session = model.newSession(maxBatchSize);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchInputs = new double[maxBatchSize * model.getInputSize()];
+        this.batch = new ArrayList<>(maxBatchSize);
+        this.batchSizeCounts = new AtomicLongArray(maxBatchSize + 1);
+
+        this.worker = new Thread(this::processBatches, "micro-batching-engine");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queues the given input for classification.
+     *
+     * @return A future which is completed with the output of the last layer for the input.
+     * @throws RejectedExecutionException If the queue is full or the engine is closed.
+     */
+    public CompletableFuture<double[]> submit(double[] input) {
+        if (input.length != session.getModel().getInputSize()) throw new IllegalArgumentException("The size of the input did not match the size of the input layer.");
+        if (closed) throw new RejectedExecutionException("The engine is closed.");
+        Request request = new Request(input);
+        if (!queue.offer(request)) throw new RejectedExecutionException("The queue of the engine is full.");
+        if (closed && queue.remove(request)) {
+            // The worker may have stopped before the request was queued.
+            request.result.completeExceptionally(new RejectedExecutionException("The engine was closed."));
+        }
+        return request.result;
+    }
+
+    private void processBatches() {
+        try {
+            while (!closed) {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = first.submitNanos + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    Request next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                    }
+                    batch.add(next);
+                }
+                calculateBatch();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RejectedExecutionException closedException = new RejectedExecutionException("The engine was closed.");
+        for (Request request : batch) {
+            request.result.completeExceptionally(closedException);
+        }
+        for (Request request = queue.poll(); request != null; request = queue.poll()) {
+            request.result.completeExceptionally(closedException);
+        }
+    }
+
+    private void calculateBatch() {
+        int inputSize = session.getModel().getInputSize();
+        int outputSize = session.getModel().getOutputSize();
+        int count = batch.size();
+        for (int sample = 0; sample < count; sample++) {
+            System.arraycopy(batch.get(sample).input, 0, batchInputs, sample * inputSize, inputSize);
+        }
+        try {
+            double[] outputs = session.calculateOutputs(batchInputs, count);
+            long now = System.nanoTime();
+            for (int sample = 0; sample < count; sample++) {
+                Request request = batch.get(sample);
+                latency.record(now - request.submitNanos);
+                request.result.complete(Arrays.copyOfRange(outputs, sample * outputSize, (sample + 1) * outputSize));
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.result.completeExceptionally(e);
+            }
+        }
+        batchSizeCounts.incrementAndGet(count);
+        batch.clear();
+    }
+
+    /**
+     * @return How many inputs are currently waiting to be calculated.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return How many batches were calculated per batch size, indexed by the batch size.
+     */
+    public long[] getBatchSizeHistogram() {
+        long[] histogram = new long[batchSizeCounts.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = batchSizeCounts.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return The latency between submitting an input and completing its future, for the given percentile (0-100).
+     */
+    public long getLatencyPercentileNanos(double percentile) {
+        return latency.getPercentile(percentile);
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    /**
+     * Stops the worker thread. Inputs which are still queued are completed exceptionally.
+     * If the calling thread is interrupted while waiting for the worker, it stops waiting and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Request {
+        private final double[] input;
+        private final long submitNanos = System.nanoTime();
+        private final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        private Request(double[] input) {
+            this.input = input;
+        }
+    }
+}
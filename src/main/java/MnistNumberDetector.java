@@ -3,24 +3,47 @@ import mnist.MnistLabelFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 public class MnistNumberDetector {
     
-    private final double MAX_PIXEL_BRIGHTNESS = 256.0;
-    private final double ETA = 0.3;
+    private static final double MAX_PIXEL_BRIGHTNESS = 256.0;
+    private static final double SIGMOID_ETA = 0.3;
+    private static final double RELU_ETA = 0.03;
+    private static final int TRAINING_CYCLES = 10;
+    private static final int VALIDATION_SAMPLES = 5000;
+    // Delete them to train again.
+    private static final Path SIGMOID_CHECKPOINT = Paths.get("mnist-network.checkpoint");
+    private static final Path RELU_CHECKPOINT = Paths.get("mnist-relu-network.checkpoint");
     
     private final List<Integer> HIDDEN_LAYERS = List.of(70, 35);
     
+    private final double eta;
+    private final Path checkpointPath;
     private final TrainingSet trainingSet;
     private final TrainingSet testSet;
     private final Network network;
     
     public MnistNumberDetector() throws IOException {
+        this(false);
+    }
+    
+    /**
+     * @param relu Whether the hidden layers use ReLU and the output layer softmax with cross-entropy, trained with
+     *             a smaller learning rate, instead of sigmoid everywhere. Both networks have their own checkpoint.
+     */
+    public MnistNumberDetector(boolean relu) throws IOException {
+        this.eta = relu ? RELU_ETA : SIGMOID_ETA;
+        this.checkpointPath = relu ? RELU_CHECKPOINT : SIGMOID_CHECKPOINT;
         System.out.println("Loading Training Data...");
         this.trainingSet = loadTrainingSet("train-images.idx3-ubyte", "train-labels.idx1-ubyte");
         System.out.println("Training Data Loaded!");
@@ -33,51 +56,114 @@ public class MnistNumberDetector {
         allLayers.add(trainingSet.getInputSize());
         allLayers.addAll(HIDDEN_LAYERS);
         allLayers.add(trainingSet.getOutputSize());
-        network = new Network(allLayers.stream().mapToInt(Integer::intValue).toArray());
-        
-        train(10);
-        calculateMseOfTestSet();
-        System.out.println("Error in test set: " + calculateErrorPercentage(testSet) + "%");
-        System.out.println("Error in training set: " + calculateErrorPercentage(trainingSet) + "%");
+        int[] layerSizes = allLayers.stream().mapToInt(Integer::intValue).toArray();
+        Activation[] activations = relu ? Activation.of(Activation.RELU, Activation.SOFTMAX, layerSizes.length)
+                : Activation.of(Activation.SIGMOID, Activation.SIGMOID, layerSizes.length);
+        NetworkCheckpoint checkpoint = loadCheckpoint(layerSizes, activations);
+        network = checkpoint != null ? checkpoint.getNetwork() : new Network(new Random(), activations, layerSizes);
+        if (checkpoint == null) {
+            train(TRAINING_CYCLES, 0);
+        } else if (!checkpoint.isFinished()) {
+            System.out.println("Continuing the training after " + checkpoint.getTrainedCycles() + " cycles.");
+            train(TRAINING_CYCLES, checkpoint.getTrainedCycles());
+        }
+        Evaluator evaluator = new Evaluator(ForkJoinPool.commonPool(), 64);
+        InferenceModel model = network.toInferenceModel();
+        Evaluation test = evaluator.evaluate(model, testSet);
+        System.out.println("MSE of test set: " + test.getMse());
+        System.out.println("Error in test set: " + test.getErrorPercentage() + "%");
+        System.out.print(test.confusionMatrixToString());
+        System.out.println("Error in training set: " + evaluator.evaluate(model, trainingSet).getErrorPercentage() + "%");
+    }
+    
+    /**
+     * Loads the network of an earlier run from the checkpoint file, if there is one with the given layer sizes
+     * and activations. If that run was stopped before its training finished, the network has to be trained on.
+     *
+     * @return The loaded checkpoint, or null if a new network has to be trained.
+     */
+    private NetworkCheckpoint loadCheckpoint(int[] layerSizes, Activation[] activations) {
+        if (!Files.exists(checkpointPath)) return null;
+        try {
+            long start = System.nanoTime();
+            NetworkCheckpoint checkpoint = NetworkCheckpoint.read(checkpointPath);
+            Network network = checkpoint.getNetwork();
+            if (!Arrays.equals(network.getLayerSizes(), layerSizes) || !Arrays.equals(network.getActivations(), activations)) {
+                System.out.println("The checkpoint " + checkpointPath + " has different layers, training a new network.");
+                return null;
+            }
+            System.out.println("Network loaded from " + checkpointPath + " in " + (System.nanoTime() - start) / 1000000 + " ms.");
+            return checkpoint;
+        } catch (IOException e) {
+            System.out.println("Could not load the checkpoint, training a new network: " + e.getMessage());
+            return null;
+        }
     }
     
     private TrainingSet loadTrainingSet(String imageFileName, String labelFileName) throws IOException {
+        return loadTrainingSet(imageFileName, labelFileName, Precision.UINT8);
+    }
+    
+    /**
+     * Loads a MNIST image and label file from the resources into a new TrainingSet.
+     *
+     * @param imageFileName The name of the image file in the resources.
+     * @param labelFileName The name of the label file in the resources.
+     * @param precision The precision in which the TrainingSet stores the samples.
+     */
+    static TrainingSet loadTrainingSet(String imageFileName, String labelFileName, Precision precision) throws IOException {
         
         String path = new File("").getAbsolutePath();
         path += "/src/main/resources/";
-        MnistImageFile imageFile = new MnistImageFile(path + imageFileName, "rw");
-        MnistLabelFile labelFile = new MnistLabelFile(path + labelFileName, "rw");
-        
-        int numberOfImages = imageFile.getCount();
-        int numberOfLabels = labelFile.getCount();
-        assert numberOfImages == numberOfLabels;
-    
-        TrainingSet trainingSet = new TrainingSet(imageFile.getEntryLength(), 10);
-    
-        
-        for (int dataIndex = 0; dataIndex < numberOfImages; dataIndex++) {
-            double[] input = new double[imageFile.getEntryLength()];
-            double[] output = new double[10];
-    
-            for (int pixel = 0; pixel < input.length; pixel++) {
-                input[pixel] = imageFile.read() / MAX_PIXEL_BRIGHTNESS;
-            }
-    
-            int label = labelFile.readLabel();
-            output[label] = 1.0;
+        try (MnistImageFile imageFile = new MnistImageFile(path + imageFileName);
+             MnistLabelFile labelFile = new MnistLabelFile(path + labelFileName)) {
+            
+            int numberOfImages = imageFile.getCount();
+            int numberOfLabels = labelFile.getCount();
+            assert numberOfImages == numberOfLabels;
             
-            trainingSet.addData(input, output);
-            if (dataIndex % (numberOfImages/20) == 0) {
-                System.out.println("Read " + dataIndex * 100 / numberOfImages + "% of Data.");
+            int imageSize = imageFile.getEntryLength();
+            byte[] pixels = new byte[numberOfImages * imageSize];
+            byte[] labels = new byte[numberOfLabels];
+            imageFile.readImages(0, numberOfImages, pixels, 0);
+            labelFile.readLabels(0, numberOfLabels, labels, 0);
+            
+            TrainingSet trainingSet = new TrainingSet(imageSize, 10, precision);
+            if (precision == Precision.UINT8) {
+                trainingSet.addData(pixels, 0, labels, 0, numberOfImages);
+                return trainingSet;
+            }
+            for (int dataIndex = 0; dataIndex < numberOfImages; dataIndex++) {
+                double[] input = new double[imageSize];
+                double[] output = new double[10];
+                
+                for (int pixel = 0; pixel < imageSize; pixel++) {
+                    input[pixel] = (pixels[dataIndex * imageSize + pixel] & 0xFF) / MAX_PIXEL_BRIGHTNESS;
+                }
+                output[labels[dataIndex] & 0xFF] = 1.0;
+                
+                trainingSet.addData(input, output);
             }
+            return trainingSet;
         }
-        
-        return trainingSet;
     }
     
     
     public void train(int trainingCycles) {
-        network.trainWithDataSet(trainingSet, trainingCycles, ETA, true);
+        train(trainingCycles, 0);
+    }
+    
+    /**
+     * @param trainingCycles How many training cycles the whole training has.
+     * @param trainedCycles How many of them an earlier run already trained, see {@link TrainingOptions#setTrainedCycles}.
+     */
+    private void train(int trainingCycles, int trainedCycles) {
+        // MNIST is stored in file order, so every cycle gets its own order, prepared on a background thread.
+        // Training stops early once the held-out samples don't improve anymore.
+        Random random = new Random();
+        TrainingSet[] split = trainingSet.split(VALIDATION_SAMPLES, random);
+        network.trainWithDataSet(split[0], new TrainingOptions(eta).setTrainingCycles(trainingCycles).setTrainedCycles(trainedCycles).setShuffle(random).setPrefetchDepth(2).setCheckpoint(checkpointPath, 1).addListener(new LoggingTrainingListener())
+                .setValidation(split[1], 0).setEarlyStopping(2, 0));
     }
     
     public void calculateMseOfTestSet() {
@@ -93,19 +179,7 @@ public class MnistNumberDetector {
      * @return The Error in %.
      */
     public double calculateErrorPercentage(TrainingSet set) {
-        double countCorrect = 0;
-        double countWrong = 0;
-        for (TrainingData data : set.getTrainingData()) {
-            int expectedDigit = ArrayHelperMethods.indexOfHighestValue(data.getExpectedOutput());
-            int actualDigit = ArrayHelperMethods.indexOfHighestValue(network.calculateOutput(data.getInput()));
-            if (expectedDigit == actualDigit) {
-                countCorrect++;
-            } else {
-                countWrong++;
-            }
-        }
-        
-        return countCorrect * 100 / (countCorrect+countWrong);
+        return new Evaluator(ForkJoinPool.commonPool(), 64).evaluate(network.toInferenceModel(), set).getErrorPercentage();
     }
     
     
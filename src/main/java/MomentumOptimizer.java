@@ -0,0 +1,55 @@
+/**
+ * Gradient descent with momentum: every parameter keeps a velocity v = momentum * v + gradient and moves by
+ * eta times it, which speeds up the training along directions the gradients agree on. With Nesterov momentum the
+ * parameter moves by eta * (gradient + momentum * v) instead, looking one step ahead.
+ */
+public class MomentumOptimizer implements Optimizer {
+
+    private final double momentum;
+    private final boolean nesterov;
+
+    /**
+     * @param momentum How much of the velocity is kept every step, usually 0.9.
+     */
+    public MomentumOptimizer(double momentum) {
+        this(momentum, false);
+    }
+
+    /**
+     * @param momentum How much of the velocity is kept every step, usually 0.9.
+     * @param nesterov Whether to use Nesterov momentum.
+     */
+    public MomentumOptimizer(double momentum, boolean nesterov) {
+        if (momentum < 0 || momentum >= 1) throw new IllegalArgumentException("The momentum has to be in [0, 1).");
+        this.momentum = momentum;
+        this.nesterov = nesterov;
+    }
+
+    @Override
+    public OptimizerState createState(int parameterCount) {
+        double[] velocity = new double[parameterCount];
+        return new OptimizerState() {
+            @Override
+            public void update(double[] parameters, double[] gradients, int stateOffset, int from, int to, double eta, int count) {
+                double scale = 1d / count;
+                for (int i = from; i < to; i++) {
+                    double gradient = gradients[i] * scale;
+                    double v = momentum * velocity[stateOffset + i] + gradient;
+                    velocity[stateOffset + i] = v;
+                    parameters[i] -= eta * (nesterov ? gradient + momentum * v : v);
+                }
+            }
+
+            @Override
+            public void update(float[] parameters, float[] gradients, int stateOffset, int from, int to, double eta, int count) {
+                double scale = 1d / count;
+                for (int i = from; i < to; i++) {
+                    double gradient = gradients[i] * scale;
+                    double v = momentum * velocity[stateOffset + i] + gradient;
+                    velocity[stateOffset + i] = v;
+                    parameters[i] -= (float) (eta * (nesterov ? gradient + momentum * v : v));
+                }
+            }
+        };
+    }
+}
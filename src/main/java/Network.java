@@ -1,15 +1,30 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Network {
 
-    private double[][] output; // Collection of all the outputs of all the neurons. [layers][neurons in layer]
-    private final double[][][] weights; //[layers][neurons in layer][connected neuron from previous layer]
-    private final double[][] bias; //[layers][neurons]
+    private final double[] weights; // All weights of all layers in one buffer. Layer l is row-major at weightOffset[l]: [neuron * layerSizes[l-1] + prevNeuron]
+    private final double[] bias; // All biases of all layers in one buffer. Layer l starts at biasOffset[l].
+    private final float[] floatWeights; // The weights and biases of a NN in single precision, with the same layout. Either these or the double ones are null.
+    private final float[] floatBias;
+    private final int weightCount;
+    private final int biasCount;
+    private final int[] weightOffset; //[layers], unused for the input layer
+    private final int[] biasOffset; //[layers], unused for the input layer
+    private final Activation[] activations; //[layers - 1], the activation of layer l is at l - 1
 
-    private final double[][] errorSignal; //[layers][neurons]
+    private static final int EVALUATION_BATCH_SIZE = 64;
+
+    private final BatchWorkspace sampleWorkspace; // Outputs and error signals of the per-sample methods when they are called on the Network directly.
+    private Optimizer optimizer; // The optimizer of the last training, whose state the next training with it continues with
+    private OptimizerState optimizerState;
 
     private final int numberOfLayers;
     private final int[] layerSizes;
@@ -17,42 +32,257 @@ public class Network {
     private final int outputLayerSize;
 
     public Network(int... layerSizes) {
+        this(new Random(), layerSizes);
+    }
+
+    /**
+     * Creates a new NN whose weights and biases are initialised with the given random generator,
+     * so two networks created with equally seeded generators are identical.
+     */
+    public Network(Random random, int... layerSizes) {
+        this(random, Precision.DOUBLE, layerSizes);
+    }
+
+    /**
+     * Creates a new NN with sigmoid activations which stores its weights, activations and gradients in the given
+     * precision. The weights and biases are initialised with the given random generator, so a NN in single precision
+     * starts with the rounded weights of a NN in double precision created with an equally seeded generator.
+     *
+     * @param precision DOUBLE or FLOAT, see {@link #getPrecision()}.
+     */
+    public Network(Random random, Precision precision, int... layerSizes) {
+        this(layerSizes, Activation.of(Activation.SIGMOID, Activation.SIGMOID, layerSizes.length), precision, ArrayHelperMethods.createRandomArray(countWeights(layerSizes), -1, 0.5, random), ArrayHelperMethods.createRandomArray(countBiases(layerSizes), -0.5, 0.7, random));
+    }
+
+    /**
+     * Creates a new NN with the given activation for every layer but the input layer. The weights are initialised
+     * with the given random generator, scaled to the number of inputs and outputs of their layer as suits the
+     * activation, and the biases with 0. With a {@link Activation#SOFTMAX} output layer the NN is trained with the
+     * cross-entropy loss, otherwise with the squared error.
+     *
+     * @param activations The activations of the layers 1 to n - 1, see {@link Activation#of}.
+     */
+    public Network(Random random, Activation[] activations, int... layerSizes) {
+        this(random, Precision.DOUBLE, activations, layerSizes);
+    }
+
+    /**
+     * Creates a new NN with the given activations like {@link #Network(Random, Activation[], int...)}, which stores its
+     * weights, activations and gradients in the given precision.
+     *
+     * @param precision DOUBLE or FLOAT, see {@link #getPrecision()}.
+     */
+    public Network(Random random, Precision precision, Activation[] activations, int... layerSizes) {
+        this(layerSizes, activations, precision, createWeights(layerSizes, activations, random), new double[countBiases(layerSizes)]);
+    }
+
+    /**
+     * Creates a NN with sigmoid activations which uses the given buffers as its weights and biases, without copying them.
+     */
+    Network(int[] layerSizes, double[] weights, double[] bias) {
+        this(layerSizes, Activation.of(Activation.SIGMOID, Activation.SIGMOID, layerSizes.length), weights, bias);
+    }
+
+    /**
+     * Creates a NN which uses the given buffers as its weights and biases, without copying them.
+     */
+    Network(int[] layerSizes, Activation[] activations, double[] weights, double[] bias) {
+        this(layerSizes, activations, Precision.DOUBLE, weights, bias);
+    }
+
+    /**
+     * Creates a NN which uses the given buffers as its weights and biases in double precision, without copying them,
+     * or copies them rounded to floats in single precision.
+     */
+    private Network(int[] layerSizes, Activation[] activations, Precision precision, double[] weights, double[] bias) {
+        if (precision == Precision.UINT8) throw new IllegalArgumentException("A Network can only calculate in double or float precision.");
+        checkActivations(layerSizes, activations);
+        if (weights.length != countWeights(layerSizes) || bias.length != countBiases(layerSizes)) throw new IllegalArgumentException("The number of weights or biases didn't match the layer sizes.");
         this.numberOfLayers = layerSizes.length;
-        this.layerSizes = layerSizes;
+        this.layerSizes = layerSizes.clone();
         this.inputLayerSize = layerSizes[0];
         this.outputLayerSize = layerSizes[numberOfLayers - 1];
 
-        this.output = new double[numberOfLayers][];
-        this.weights = new double[numberOfLayers][][];
-        this.bias = new double[numberOfLayers][];
-
-        this.errorSignal = new double[numberOfLayers][];
+        this.weightOffset = new int[numberOfLayers];
+        this.biasOffset = new int[numberOfLayers];
+        for (int i = 1; i < numberOfLayers; i++) {
+            this.weightOffset[i] = this.weightOffset[i - 1] + (i > 1 ? layerSizes[i - 1] * layerSizes[i - 2] : 0);
+            this.biasOffset[i] = this.biasOffset[i - 1] + (i > 1 ? layerSizes[i - 1] : 0);
+        }
+        boolean single = precision == Precision.FLOAT;
+        this.weights = single ? null : weights;
+        this.bias = single ? null : bias;
+        this.floatWeights = single ? toFloats(weights) : null;
+        this.floatBias = single ? toFloats(bias) : null;
+        this.weightCount = weights.length;
+        this.biasCount = bias.length;
+        this.activations = activations.clone();
+        this.sampleWorkspace = new BatchWorkspace(1, layerSizes, precision);
+    }
+    
+    private static float[] toFloats(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+    
+    private static double[] toDoubles(float[] values) {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
 
-        for (int i = 0; i < numberOfLayers; i++) {
-            this.output[i] = new double[layerSizes[i]];
-            this.errorSignal[i] = new double[layerSizes[i]];
-            this.bias[i] = ArrayHelperMethods.createRandomArray(layerSizes[i], -0.5, 0.7);
+    static int countWeights(int[] layerSizes) {
+        int count = 0;
+        for (int i = 1; i < layerSizes.length; i++) {
+            count += layerSizes[i] * layerSizes[i - 1];
+        }
+        return count;
+    }
 
-            if (i > 0) {
-                this.weights[i] = ArrayHelperMethods.createRandom2DArray(layerSizes[i], layerSizes[i-1], -1, 0.5);
+    static int countBiases(int[] layerSizes) {
+        int count = 0;
+        for (int i = 1; i < layerSizes.length; i++) {
+            count += layerSizes[i];
+        }
+        return count;
+    }
+    
+    private static void checkActivations(int[] layerSizes, Activation[] activations) {
+        if (activations.length != layerSizes.length - 1) throw new IllegalArgumentException("Every layer but the input layer needs an activation.");
+        for (int i = 0; i < activations.length; i++) {
+            if (activations[i] == null) throw new IllegalArgumentException("The activation of layer " + (i + 1) + " is missing.");
+            if (activations[i] == Activation.SOFTMAX && i < activations.length - 1) throw new IllegalArgumentException("Softmax is only supported for the output layer.");
+        }
+    }
+    
+    private static double[] createWeights(int[] layerSizes, Activation[] activations, Random random) {
+        checkActivations(layerSizes, activations);
+        double[] weights = new double[countWeights(layerSizes)];
+        int i = 0;
+        for (int layer = 1; layer < layerSizes.length; layer++) {
+            double limit = activations[layer - 1].weightLimit(layerSizes[layer - 1], layerSizes[layer]);
+            for (int end = i + layerSizes[layer] * layerSizes[layer - 1]; i < end; i++) {
+                weights[i] = (random.nextDouble() * 2 - 1) * limit;
             }
         }
+        return weights;
     }
 
+    /**
+     * Calculates the output of this NN for the given input.
+     * For classifying from several threads at once, use the sessions of {@link #toInferenceModel()} instead.
+     *
+     * @param input The input to calculate the output.
+     * @return A new array with the output of the last layer.
+     */
     public double[] calculateOutput(double... input) {
+        return calculateOutput(input, sampleWorkspace).clone();
+    }
+    
+    /**
+     * Creates an immutable snapshot of the current weights and biases of this NN for inference.
+     * Further training of this NN doesn't affect the snapshot.
+     */
+    public InferenceModel toInferenceModel() {
+        return toInferenceModel(SigmoidMode.EXACT);
+    }
+    
+    /**
+     * Creates an immutable snapshot of the current weights and biases of this NN for inference,
+     * which calculates the sigmoid function as given.
+     */
+    public InferenceModel toInferenceModel(SigmoidMode sigmoidMode) {
+        if (floatWeights != null) return new InferenceModel(layerSizes, activations, toDoubles(floatWeights), weightOffset, toDoubles(floatBias), biasOffset, sigmoidMode);
+        return new InferenceModel(layerSizes, activations, weights, weightOffset, bias, biasOffset, sigmoidMode);
+    }
+    
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+    
+    /**
+     * @return The activations of the layers 1 to n - 1.
+     */
+    public Activation[] getActivations() {
+        return activations.clone();
+    }
+    
+    /**
+     * @return The precision in which this NN stores its weights, activations and gradients: DOUBLE, or FLOAT for half
+     *         the memory and memory bandwidth. A NN in single precision can only train with the samples of a
+     *         {@link TrainingSet} in order, with the exact sigmoid function and without checkpoints, validation or a
+     *         parameter server. Its inference models calculate in double precision.
+     */
+    public Precision getPrecision() {
+        return floatWeights != null ? Precision.FLOAT : Precision.DOUBLE;
+    }
+    
+    /**
+     * @return The flat weight buffer of this NN itself, not a copy, or null for a NN in single precision.
+     */
+    double[] getWeights() {
+        return weights;
+    }
+    
+    /**
+     * @return The flat bias buffer of this NN itself, not a copy, or null for a NN in single precision.
+     */
+    double[] getBias() {
+        return bias;
+    }
+    
+    private double[] calculateOutput(double[] input, BatchWorkspace workspace) {
         if (input.length != inputLayerSize) throw new IllegalArgumentException("The size of the input did not match the size of the input layers");
-        this.output[0] = input;
+        if (floatWeights != null) {
+            loadSample(input, null, workspace);
+            calculateFloatBatchOutput(workspace, 1);
+            return toDoubles(workspace.floatActivations[numberOfLayers - 1]);
+        }
+        System.arraycopy(input, 0, workspace.activations[0], 0, inputLayerSize);
+        return calculateSampleOutput(workspace);
+    }
+    
+    /**
+     * Copies the given sample, rounded to floats, into the first row of a workspace in single precision.
+     *
+     * @param expectedOutput The expected output, or null to only copy the input.
+     */
+    private void loadSample(double[] input, double[] expectedOutput, BatchWorkspace workspace) {
+        for (int i = 0; i < inputLayerSize; i++) {
+            workspace.floatActivations[0][i] = (float) input[i];
+        }
+        for (int i = 0; expectedOutput != null && i < outputLayerSize; i++) {
+            workspace.floatTargets[i] = (float) expectedOutput[i];
+        }
+    }
+    
+    /**
+     * Calculates the output for the single sample whose input is already in the first row of the workspace.
+     * The first layer skips zero inputs if they are sparse.
+     */
+    private double[] calculateSampleOutput(BatchWorkspace workspace) {
+        double[][] output = workspace.activations;
+        workspace.sparse = workspace.sparseInputs.collect(output[0], 1);
         for (int layer = 1; layer < numberOfLayers; layer++) {
-            for (int neuron = 0; neuron < layerSizes[layer]; neuron++) {
-
-                double sum = 0;
-                for (int prevNeuron = 0; prevNeuron < output[layer - 1].length; prevNeuron++) {
-                    sum += weights[layer][neuron][prevNeuron] * output[layer - 1][prevNeuron];
+            double[] prevOutput = output[layer - 1];
+            double[] layerOutput = output[layer];
+            int prevSize = layerSizes[layer - 1];
+            if (layer == 1 && workspace.sparse) {
+                SparseInputs sparseInputs = workspace.sparseInputs;
+                System.arraycopy(bias, biasOffset[1], layerOutput, 0, layerSizes[1]);
+                MatrixKernels.multiplyTransposedSparse(sparseInputs.values, sparseInputs.indices, sparseInputs.counts, weights, weightOffset[1], layerOutput, 0, 1, layerSizes[1], prevSize);
+            } else {
+                int row = weightOffset[layer];
+                for (int neuron = 0; neuron < layerSizes[layer]; neuron++, row += prevSize) {
+                    layerOutput[neuron] = MatrixKernels.dot(weights, row, prevOutput, 0, prevSize) + bias[biasOffset[layer] + neuron];
                 }
-                sum += bias[layer][neuron];
-
-                output[layer][neuron] = calculateSigmoidFunction(sum);
             }
+            activations[layer - 1].apply(layerOutput, 1, layerSizes[layer], workspace.sigmoidMode);
         }
         return output[numberOfLayers - 1];
     }
@@ -64,10 +294,42 @@ public class Network {
      * @param eta The learning rate.
      */
     public void train(double[] input, double[] expectedOutput, double eta) {
+        train(input, expectedOutput, eta, sampleWorkspace);
+    }
+    
+    private void train(double[] input, double[] expectedOutput, double eta, BatchWorkspace workspace) {
         if (input.length != inputLayerSize || expectedOutput.length != outputLayerSize) throw new IllegalArgumentException("The sizes of the input or expected output weren't matching the size of the Network.");
-        calculateOutput(input);
-        backpropError(expectedOutput);
-        updateWeightsAndBias(eta);
+        if (floatWeights != null) {
+            loadSample(input, expectedOutput, workspace);
+            trainLoadedSample(eta, workspace);
+            return;
+        }
+        calculateOutput(input, workspace);
+        backpropAndUpdate(expectedOutput, eta, workspace);
+    }
+    
+    /**
+     * Trains with the sample at the given index of the set, copying it straight into the workspace.
+     */
+    private void trainSample(TrainingSet set, int index, double eta, BatchWorkspace workspace) {
+        long start = workspace.startPhase();
+        loadBatch(set, index, 1, workspace);
+        workspace.endPhase(TrainingPhase.LOADING, start);
+        trainLoadedSample(eta, workspace);
+    }
+    
+    private void trainLoadedSample(double eta, BatchWorkspace workspace) {
+        long start = workspace.startPhase();
+        if (floatWeights != null) {
+            calculateFloatBatchOutput(workspace, 1);
+            start = workspace.endPhase(TrainingPhase.FORWARD, start);
+            backpropAndUpdate(workspace.floatTargets, (float) eta, workspace);
+        } else {
+            calculateSampleOutput(workspace);
+            start = workspace.endPhase(TrainingPhase.FORWARD, start);
+            backpropAndUpdate(workspace.targets, eta, workspace);
+        }
+        workspace.endPhase(TrainingPhase.BACKPROP, start);
     }
     
     /**
@@ -90,69 +352,688 @@ public class Network {
      * @param printLog Whether the MSE should be calculated and printed.
      */
     public void trainWithDataSet(TrainingSet set, int trainingCycles, double eta, boolean printLog) {
+        trainWithDataSet(set, trainingCycles, 1, eta, printLog);
+    }
+    
+    /**
+     * Train this NN multiple times with every entry of the given TrainingSet, using mini-batches of the given size.
+     * A batch size of 1 trains with every sample on its own, just like {@link #train(double[], double[], double)}.
+     *
+     * @param set The given TrainingSet.
+     * @param trainingCycles How many times the whole set should be trained with.
+     * @param batchSize How many samples are trained with at once.
+     * @param eta The learning rate.
+     * @param printLog Whether the MSE should be calculated and printed.
+     */
+    public void trainWithDataSet(TrainingSet set, int trainingCycles, int batchSize, double eta, boolean printLog) {
+        trainWithDataSet(set, new TrainingOptions(eta).setTrainingCycles(trainingCycles).setBatchSize(batchSize).setPrintLog(printLog));
+    }
+    
+    /**
+     * Train this NN with every entry of the given TrainingSet, as configured by the given options.
+     *
+     * @param set The given TrainingSet.
+     * @param options How the NN should be trained.
+     */
+    public void trainWithDataSet(TrainingSet set, TrainingOptions options) {
+        int trainingCycles = options.getTrainingCycles();
+        int batchSize = options.getBatchSize();
+        double eta = options.getEta();
+        boolean printLog = options.isPrintLog();
+        ForkJoinPool pool = options.getPool();
+        boolean hogwild = options.isHogwild();
+        if (hogwild && pool == null) throw new IllegalArgumentException("Hogwild training needs a pool to train on.");
+        if (hogwild && (options.getShuffle() != null || options.getPrefetchDepth() > 0)) throw new IllegalArgumentException("Hogwild training can't shuffle or prefetch the samples.");
+        if (hogwild && !(options.getOptimizer() instanceof SgdOptimizer)) throw new IllegalArgumentException("Hogwild training only supports plain SGD, other optimizers have state which the threads can't share.");
+        if (floatWeights != null) checkSinglePrecision(options);
+        // Only the DataSource path can validate between batches.
+        if (!hogwild && (options.getShuffle() != null || options.getPrefetchDepth() > 0 || options.getValidation() != null)) {
+            try {
+                trainWithDataSet((DataSource) set, options);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        
         if (printLog)
-            System.out.println("Starting training with " + trainingCycles + " cycles...");
-        for (int cycle = 0; cycle < trainingCycles; cycle++) {
-            for (int trainingData = 0; trainingData < set.getDataCount(); trainingData++) {
-                train(set.getInput(trainingData), set.getOutput(trainingData), eta);
-                if (printLog && trainingData % (set.getDataCount()/10) == 0) {
-                    System.out.println("Trained with " + trainingData * 100 / set.getDataCount() + "% of Data.");
+            AsyncLog.println("Starting training with " + trainingCycles + " cycles...");
+        BatchWorkspace[] workspaces = createWorkspaces(options);
+        TrainingMonitor monitor = new TrainingMonitor(options, workspaces);
+        Evaluator evaluator = new Evaluator(pool, EVALUATION_BATCH_SIZE);
+        Evaluation evaluation = null; // of the last training cycle
+        ValidationController validation = new ValidationController(this, options, evaluator, workspaces[0]);
+        ParameterServerClient server;
+        try {
+            server = new ParameterServerClient(this, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        OptimizerState optimizer = getOptimizerState(options.getOptimizer());
+        LearningRateSchedule schedule = options.getSchedule();
+        long batchesPerCycle = (set.getDataCount() + batchSize - 1) / batchSize;
+        int cycle = options.getTrainedCycles();
+        long batch = cycle * batchesPerCycle;
+        int progressStep = Math.max(1, set.getDataCount() / 10);
+        boolean stopped = false;
+        try {
+            while (cycle < trainingCycles && !stopped) {
+                monitor.startCycle();
+                if (hogwild) {
+                    trainHogwild(set, batchSize, schedule.getEta(eta, batch, batchesPerCycle, batchesPerCycle * trainingCycles), optimizer, workspaces, pool);
+                    batch += batchesPerCycle;
+                } else {
+                    for (int trainingData = 0; trainingData < set.getDataCount(); trainingData += batchSize) {
+                        int count = Math.min(batchSize, set.getDataCount() - trainingData);
+                        double batchEta = schedule.getEta(eta, batch++, batchesPerCycle, batchesPerCycle * trainingCycles);
+                        if (pool == null && trainsSamples(options)) {
+                            trainSample(set, trainingData, batchEta, workspaces[0]);
+                        } else if (pool == null) {
+                            trainBatch(set, trainingData, count, batchEta, optimizer, workspaces[0]);
+                        } else {
+                            int first = trainingData;
+                            trainBatchParallel((shardFirst, shardCount, workspace) -> loadBatch(set, first + shardFirst, shardCount, workspace), count, batchEta, optimizer, workspaces, pool);
+                        }
+                        try {
+                            server.batchCompleted(count);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        if (printLog && (trainingData % progressStep == 0 || trainingData / progressStep != (trainingData + count - 1) / progressStep)) {
+                            AsyncLog.println("Trained with " + trainingData * 100 / set.getDataCount() + "% of Data.");
+                        }
+                    }
                 }
+                if (printLog) {
+                    AsyncLog.println("Training cycle " + (cycle + 1) + " completed!");
+                    long start = workspaces[0].startPhase();
+                    evaluation = evaluator.evaluate(toInferenceModel(), set);
+                    workspaces[0].endPhase(TrainingPhase.EVALUATION, start);
+                    AsyncLog.println("MSE of training set: " + evaluation.getMse() + ", accuracy: " + evaluation.getAccuracyPercentage() + "%");
+                }
+                try {
+                    stopped = validation.cycleCompleted();
+                    monitor.endCycle(cycle, set.getDataCount(), printLog ? evaluation.getMse() : Double.NaN);
+                    if (!stopped) saveCheckpoint(options, cycle, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                cycle++;
+            }
+            boolean replaced;
+            try {
+                replaced = server.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            if (printLog) {
-                System.out.println("Training cycle " + (cycle + 1) + " completed!");
-                double mse = calcualteMSEAverage(set);
-                System.out.println("MSE of training set: " + mse);
+            if (validation.finish() || replaced) evaluation = null;
+            try {
+                saveCheckpoint(options, cycle - 1, true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            
+        } finally {
+            server.close();
         }
         if (printLog) {
-            System.out.println("Training completed!");
-            double mse = calcualteMSEAverage(set);
-            System.out.println("MSE of training set after " + trainingCycles + " training cycles: " + mse);
+            AsyncLog.println("Training completed!");
+            if (evaluation == null) evaluation = evaluator.evaluate(toInferenceModel(), set);
+            AsyncLog.println("MSE of training set after " + cycle + " training cycles: " + evaluation.getMse());
         }
+        if (printLog || monitor.isEnabled()) AsyncLog.flush();
     }
     
     public void trainWithDataSet(TrainingSet set, int trainingCycles, double eta) {
         trainWithDataSet(set, trainingCycles, eta, true);
     }
     
-
-    private void backpropError(double[] expectedOutputs) {
-        for (int neuron = 0; neuron < outputLayerSize; neuron++) {
-            double actualOutput = output[numberOfLayers - 1][neuron];
-            double expectedOutput = expectedOutputs[neuron];
-            double outputDerivative = actualOutput * (1 - actualOutput);
-            errorSignal[numberOfLayers - 1][neuron] = (actualOutput - expectedOutput) * outputDerivative;
+    /**
+     * Train this NN with every sample of the given DataSource, as configured by the given options.
+     * The samples are read batch by batch straight into the scratch buffers, so the source doesn't need to fit
+     * into memory. With a prefetch depth the batches are read on a background thread while training,
+     * see {@link PrefetchingDataSource}. Hogwild training is not supported.
+     *
+     * @param source The given DataSource.
+     * @param options How the NN should be trained.
+     */
+    public void trainWithDataSet(DataSource source, TrainingOptions options) throws IOException {
+        if (options.isHogwild()) throw new IllegalArgumentException("A DataSource can't be trained with Hogwild-style.");
+        if (floatWeights != null) throw new IllegalArgumentException("A Network in single precision can only be trained with a TrainingSet.");
+        if (source.getInputSize() != inputLayerSize || source.getOutputSize() != outputLayerSize) throw new IllegalArgumentException("The sizes of the DataSource weren't matching the size of the Network.");
+        int batchSize = options.getBatchSize();
+        double eta = options.getEta();
+        boolean printLog = options.isPrintLog();
+        ForkJoinPool pool = options.getPool();
+        DataSource batches = options.getPrefetchDepth() > 0 ? new PrefetchingDataSource(source, batchSize, options.getPrefetchDepth()) : source;
+        
+        if (printLog)
+            AsyncLog.println("Starting training with " + options.getTrainingCycles() + " cycles...");
+        BatchWorkspace[] workspaces = createWorkspaces(options);
+        TrainingMonitor monitor = new TrainingMonitor(options, workspaces);
+        Evaluator evaluator = new Evaluator(pool, EVALUATION_BATCH_SIZE);
+        Evaluation evaluation = null; // of the last training cycle
+        ValidationController validation = new ValidationController(this, options, evaluator, workspaces[0]);
+        ParameterServerClient server = new ParameterServerClient(this, options);
+        // With a pool every batch is read here first and then copied shard by shard in parallel.
+        double[] batchInputs = pool == null ? workspaces[0].activations[0] : new double[batchSize * inputLayerSize];
+        double[] batchTargets = pool == null ? workspaces[0].targets : new double[batchSize * outputLayerSize];
+        OptimizerState optimizer = getOptimizerState(options.getOptimizer());
+        LearningRateSchedule schedule = options.getSchedule();
+        long batchesPerCycle = (source.getDataCount() + batchSize - 1) / batchSize;
+        int cycle = options.getTrainedCycles();
+        long batch = cycle * batchesPerCycle;
+        int progressStep = Math.max(1, source.getDataCount() / 10);
+        boolean stopped = false;
+        try {
+            while (cycle < options.getTrainingCycles() && !stopped) {
+                monitor.startCycle();
+                int trainingData = 0;
+                try (DataCursor cursor = batches.openCursor(options.getShuffle())) {
+                    while (true) {
+                        long start = workspaces[0].startPhase();
+                        int count = cursor.next(batchInputs, batchTargets, batchSize);
+                        workspaces[0].endPhase(TrainingPhase.LOADING, start);
+                        if (count == 0) break;
+                        double batchEta = schedule.getEta(eta, batch++, batchesPerCycle, batchesPerCycle * options.getTrainingCycles());
+                        if (pool != null) {
+                            trainBatchParallel((shardFirst, shardCount, workspace) -> {
+                                System.arraycopy(batchInputs, shardFirst * inputLayerSize, workspace.activations[0], 0, shardCount * inputLayerSize);
+                                System.arraycopy(batchTargets, shardFirst * outputLayerSize, workspace.targets, 0, shardCount * outputLayerSize);
+                            }, count, batchEta, optimizer, workspaces, pool);
+                        } else if (trainsSamples(options)) {
+                            trainLoadedSample(batchEta, workspaces[0]);
+                        } else {
+                            calculateBatchGradients(workspaces[0], count);
+                            applyGradients(workspaces[0], batchEta, count, optimizer);
+                        }
+                        if (printLog && (trainingData % progressStep == 0 || trainingData / progressStep != (trainingData + count - 1) / progressStep)) {
+                            AsyncLog.println("Trained with " + trainingData * 100 / source.getDataCount() + "% of Data.");
+                        }
+                        trainingData += count;
+                        server.batchCompleted(count);
+                        if (validation.batchCompleted()) {
+                            stopped = true;
+                            break;
+                        }
+                    }
+                }
+                if (printLog) {
+                    AsyncLog.println("Training cycle " + (cycle + 1) + " completed!");
+                    long start = workspaces[0].startPhase();
+                    evaluation = evaluator.evaluate(toInferenceModel(), source);
+                    workspaces[0].endPhase(TrainingPhase.EVALUATION, start);
+                    AsyncLog.println("MSE of training set: " + evaluation.getMse() + ", accuracy: " + evaluation.getAccuracyPercentage() + "%");
+                }
+                stopped = validation.cycleCompleted() || stopped;
+                monitor.endCycle(cycle, trainingData, printLog ? evaluation.getMse() : Double.NaN);
+                if (!stopped) saveCheckpoint(options, cycle, false);
+                cycle++;
+            }
+            boolean replaced = server.finish();
+            if (validation.finish() || replaced) evaluation = null;
+            saveCheckpoint(options, cycle - 1, true);
+        } finally {
+            server.close();
+        }
+        if (printLog) {
+            AsyncLog.println("Training completed!");
+            if (evaluation == null) evaluation = evaluator.evaluate(toInferenceModel(), source);
+            AsyncLog.println("MSE of training set after " + cycle + " training cycles: " + evaluation.getMse());
         }
+        if (printLog || monitor.isEnabled()) AsyncLog.flush();
+    }
+    
+    /**
+     * Saves this NN if the options ask for a checkpoint after the given (0 based) training cycle. Only the one at
+     * the end of the training is marked as finished, the last training cycle is left to it.
+     *
+     * @param finished Whether the training ended after the cycle, even if it isn't the last cycle of the options.
+     */
+    private void saveCheckpoint(TrainingOptions options, int cycle, boolean finished) throws IOException {
+        if (options.getCheckpointPath() == null) return;
+        if (finished || ((cycle + 1) % options.getCheckpointInterval() == 0 && cycle + 1 < options.getTrainingCycles())) {
+            NetworkCheckpoint.save(this, options.getCheckpointPath(), cycle + 1, finished);
+        }
+    }
+    
+    /**
+     * @return The state of the given optimizer for the weights and biases of this NN: the one of the last training if
+     *         it used the same optimizer, so momentum and running averages carry over to the next call, a new one
+     *         otherwise.
+     */
+    private OptimizerState getOptimizerState(Optimizer optimizer) {
+        if (optimizer != this.optimizer) {
+            this.optimizer = optimizer;
+            this.optimizerState = optimizer.createState(weightCount + biasCount);
+        }
+        return optimizerState;
+    }
+    
+    /**
+     * A NN in single precision has no double weights for checkpoints, validation and parameter servers to work on,
+     * and none of the sigmoid approximations, see {@link #getPrecision()}.
+     */
+    private static void checkSinglePrecision(TrainingOptions options) {
+        if (options.getShuffle() != null || options.getPrefetchDepth() > 0 || options.getValidation() != null) throw new IllegalArgumentException("A Network in single precision can't shuffle, prefetch or validate the samples.");
+        if (options.getCheckpointPath() != null || options.getParameterServer() != null) throw new IllegalArgumentException("A Network in single precision can't save checkpoints or train with a parameter server.");
+        if (options.getSigmoidMode() != SigmoidMode.EXACT) throw new IllegalArgumentException("A Network in single precision only calculates the exact sigmoid function.");
+    }
+    
+    /**
+     * @return Whether every sample is trained on its own, updating the weights while backpropagating.
+     *         Only plain SGD can do that; other optimizers train with batches of one sample.
+     */
+    private static boolean trainsSamples(TrainingOptions options) {
+        return options.getBatchSize() == 1 && options.getOptimizer() instanceof SgdOptimizer;
+    }
+    
+    /**
+     * Creates the scratch buffers for training as configured: one per thread for Hogwild training, one per shard
+     * of a batch for data-parallel training and a single one otherwise.
+     */
+    private BatchWorkspace[] createWorkspaces(TrainingOptions options) {
+        int batchSize = options.getBatchSize();
+        ForkJoinPool pool = options.getPool();
+        BatchWorkspace[] workspaces;
+        if (options.isHogwild()) {
+            workspaces = new BatchWorkspace[pool.getParallelism()];
+            for (int worker = 0; worker < workspaces.length; worker++) {
+                workspaces[worker] = trainsSamples(options) ? new BatchWorkspace(1, layerSizes, getPrecision()) : createBatchWorkspace(batchSize);
+            }
+        } else if (pool != null) {
+            int workers = Math.min(pool.getParallelism(), batchSize);
+            workspaces = new BatchWorkspace[workers];
+            for (int worker = 0; worker < workers; worker++) {
+                workspaces[worker] = createBatchWorkspace((batchSize + workers - 1) / workers);
+            }
+        } else {
+            workspaces = new BatchWorkspace[]{trainsSamples(options) ? new BatchWorkspace(1, layerSizes, getPrecision()) : createBatchWorkspace(batchSize)};
+        }
+        for (BatchWorkspace workspace : workspaces) {
+            workspace.sigmoidMode = options.getSigmoidMode();
+        }
+        return workspaces;
+    }
+    
 
+    /**
+     * Train this NN once with every entry of the given TrainingSet, in mini-batches.
+     * Each batch is forwarded and backpropagated at once and the weights are updated once per batch,
+     * using the average gradient of all samples in the batch.
+     *
+     * @param set The given TrainingSet.
+     * @param batchSize How many samples are trained with at once.
+     * @param eta The learning rate.
+     */
+    public void trainBatch(TrainingSet set, int batchSize, double eta) {
+        if (batchSize < 1) throw new IllegalArgumentException("The batch size has to be at least 1.");
+        BatchWorkspace workspace = createBatchWorkspace(batchSize);
+        OptimizerState optimizer = new SgdOptimizer().createState(weightCount + biasCount);
+        for (int first = 0; first < set.getDataCount(); first += batchSize) {
+            trainBatch(set, first, Math.min(batchSize, set.getDataCount() - first), eta, optimizer, workspace);
+        }
+    }
+    
+    BatchWorkspace createBatchWorkspace(int capacity) {
+        return new BatchWorkspace(capacity, layerSizes, getPrecision(), weightCount, biasCount);
+    }
+    
+    private void trainBatch(TrainingSet set, int first, int count, double eta, OptimizerState optimizer, BatchWorkspace workspace) {
+        long start = workspace.startPhase();
+        loadBatch(set, first, count, workspace);
+        workspace.endPhase(TrainingPhase.LOADING, start);
+        calculateBatchGradients(workspace, count);
+        applyGradients(workspace, eta, count, optimizer);
+    }
+    
+    /**
+     * Splits the batch into one shard per workspace and lets every shard load its samples and calculate its
+     * gradients in parallel on its own workspace. The gradients are then summed up in the fixed order of the
+     * workspaces, which makes the result independent of how the pool schedules the shards.
+     */
+    private void trainBatchParallel(BatchLoader loader, int count, double eta, OptimizerState optimizer, BatchWorkspace[] workspaces, ForkJoinPool pool) {
+        int workers = Math.min(workspaces.length, count);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            int shardFirst = count * worker / workers;
+            int shardCount = count * (worker + 1) / workers - shardFirst;
+            BatchWorkspace workspace = workspaces[worker];
+            tasks.add(ForkJoinTask.adapt(() -> {
+                long start = workspace.startPhase();
+                loader.load(shardFirst, shardCount, workspace);
+                workspace.endPhase(TrainingPhase.LOADING, start);
+                calculateBatchGradients(workspace, shardCount);
+            }));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        
+        // Reduce and apply the weight gradients in parallel, every task owns one range of the weights.
+        long start = workspaces[0].startPhase();
+        optimizer.nextStep();
+        tasks.clear();
+        for (int worker = 0; worker < workers; worker++) {
+            int from = weightCount * worker / workers;
+            int to = weightCount * (worker + 1) / workers;
+            tasks.add(ForkJoinTask.adapt(() -> applyGradients(workspaces, workers, true, from, to, eta, count, optimizer)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        applyGradients(workspaces, workers, false, 0, biasCount, eta, count, optimizer);
+        workspaces[0].endPhase(TrainingPhase.UPDATE, start);
+    }
+    
+    /**
+     * Lets every thread of the pool train one part of the set on its own workspace. The threads update the shared
+     * weights and biases without any synchronisation, so concurrent updates may get lost, which is tolerable
+     * for SGD as long as most updates touch different weights. The optimizer is always plain SGD, which has no state.
+     */
+    private void trainHogwild(TrainingSet set, int batchSize, double eta, OptimizerState optimizer, BatchWorkspace[] workspaces, ForkJoinPool pool) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(workspaces.length);
+        for (int worker = 0; worker < workspaces.length; worker++) {
+            int first = set.getDataCount() * worker / workspaces.length;
+            int end = set.getDataCount() * (worker + 1) / workspaces.length;
+            BatchWorkspace workspace = workspaces[worker];
+            tasks.add(ForkJoinTask.adapt(() -> {
+                for (int trainingData = first; trainingData < end; trainingData += batchSize) {
+                    if (!workspace.hasGradients()) {
+                        trainSample(set, trainingData, eta, workspace);
+                    } else {
+                        trainBatch(set, trainingData, Math.min(batchSize, end - trainingData), eta, optimizer, workspace);
+                    }
+                }
+            }));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+    
+    /**
+     * Copies the samples of one shard of a batch into the first rows of a workspace.
+     */
+    private interface BatchLoader {
+        void load(int first, int count, BatchWorkspace workspace);
+    }
+    
+    private void loadBatch(TrainingSet set, int first, int count, BatchWorkspace workspace) {
+        if (set.getInputSize() != inputLayerSize || set.getOutputSize() != outputLayerSize) throw new IllegalArgumentException("The sizes of the TrainingSet weren't matching the size of the Network.");
+        for (int sample = 0; sample < count; sample++) {
+            if (floatWeights != null) {
+                set.copyInput(first + sample, workspace.floatActivations[0], sample * inputLayerSize);
+                set.copyOutput(first + sample, workspace.floatTargets, sample * outputLayerSize);
+            } else {
+                set.copyInput(first + sample, workspace.activations[0], sample * inputLayerSize);
+                set.copyOutput(first + sample, workspace.targets, sample * outputLayerSize);
+            }
+        }
+    }
+    
+    private void calculateBatchGradients(BatchWorkspace workspace, int count) {
+        long start = workspace.startPhase();
+        if (floatWeights != null) {
+            calculateFloatBatchOutput(workspace, count);
+            start = workspace.endPhase(TrainingPhase.FORWARD, start);
+            backpropFloatBatchError(workspace, count);
+            accumulateFloatBatchGradients(workspace, count);
+        } else {
+            calculateBatchOutput(workspace, count);
+            start = workspace.endPhase(TrainingPhase.FORWARD, start);
+            backpropBatchError(workspace, count);
+            accumulateBatchGradients(workspace, count);
+        }
+        workspace.endPhase(TrainingPhase.BACKPROP, start);
+    }
+    
+    private void calculateBatchOutput(BatchWorkspace workspace, int count) {
+        workspace.sparse = workspace.sparseInputs.collect(workspace.activations[0], count);
+        for (int layer = 1; layer < numberOfLayers; layer++) {
+            int layerSize = layerSizes[layer];
+            double[] layerOutput = workspace.activations[layer];
+            for (int sample = 0; sample < count; sample++) {
+                System.arraycopy(bias, biasOffset[layer], layerOutput, sample * layerSize, layerSize);
+            }
+            if (layer == 1 && workspace.sparse) {
+                SparseInputs sparseInputs = workspace.sparseInputs;
+                MatrixKernels.multiplyTransposedSparse(sparseInputs.values, sparseInputs.indices, sparseInputs.counts, weights, weightOffset[1], layerOutput, 0, count, layerSize, inputLayerSize);
+            } else {
+                MatrixKernels.multiplyTransposed(workspace.activations[layer - 1], 0, weights, weightOffset[layer], layerOutput, 0, count, layerSize, layerSizes[layer - 1]);
+            }
+            activations[layer - 1].apply(layerOutput, count, layerSize, workspace.sigmoidMode);
+        }
+    }
+    
+    private void backpropBatchError(BatchWorkspace workspace, int count) {
+        calculateOutputErrorSignals(workspace.activations[numberOfLayers - 1], workspace.targets, workspace.errorSignals[numberOfLayers - 1], count * outputLayerSize);
+        
         for (int layer = numberOfLayers - 2; layer > 0; layer--) {
-            for (int neuron = 0; neuron < layerSizes[layer]; neuron++) {
-                double sum = 0;
-                for (int nextNeuron = 0; nextNeuron < layerSizes[layer + 1]; nextNeuron++) {
-                    sum += weights[layer + 1][nextNeuron][neuron] * errorSignal[layer + 1][nextNeuron];
+            double[] layerErrorSignal = workspace.errorSignals[layer];
+            Arrays.fill(layerErrorSignal, 0, count * layerSizes[layer], 0);
+            MatrixKernels.multiply(workspace.errorSignals[layer + 1], 0, weights, weightOffset[layer + 1], layerErrorSignal, 0, count, layerSizes[layer], layerSizes[layer + 1]);
+            activations[layer - 1].multiplyDerivative(workspace.activations[layer], layerErrorSignal, count * layerSizes[layer]);
+        }
+    }
+    
+    /**
+     * Calculates the error signals of the output layer, the derivative of the loss by the inputs of the activation:
+     * output - expected output for softmax with cross-entropy, multiplied with the derivative of the activation
+     * for the squared error.
+     */
+    private void calculateOutputErrorSignals(double[] outputs, double[] expectedOutputs, double[] errorSignals, int length) {
+        for (int i = 0; i < length; i++) {
+            errorSignals[i] = outputs[i] - expectedOutputs[i];
+        }
+        Activation outputActivation = activations[numberOfLayers - 2];
+        if (outputActivation != Activation.SOFTMAX) {
+            outputActivation.multiplyDerivative(outputs, errorSignals, length);
+        }
+    }
+    
+    private void accumulateBatchGradients(BatchWorkspace workspace, int count) {
+        for (int layer = 1; layer < numberOfLayers; layer++) {
+            int layerSize = layerSizes[layer];
+            double[] layerErrorSignal = workspace.errorSignals[layer];
+            if (layer == 1 && workspace.sparse) {
+                SparseInputs sparseInputs = workspace.sparseInputs;
+                MatrixKernels.multiplyTransposedASparse(layerErrorSignal, 0, sparseInputs.values, sparseInputs.indices, sparseInputs.counts, workspace.weightGradient, weightOffset[1], layerSize, inputLayerSize, count);
+            } else {
+                MatrixKernels.multiplyTransposedA(layerErrorSignal, 0, workspace.activations[layer - 1], 0, workspace.weightGradient, weightOffset[layer], layerSize, layerSizes[layer - 1], count);
+            }
+            for (int sample = 0; sample < count; sample++) {
+                for (int neuron = 0; neuron < layerSize; neuron++) {
+                    workspace.biasGradient[biasOffset[layer] + neuron] += layerErrorSignal[sample * layerSize + neuron];
                 }
-                double derivative = output[layer][neuron] * (1 - output[layer][neuron]);
-                errorSignal[layer][neuron] = sum * derivative;
             }
         }
     }
-
-    private void updateWeightsAndBias(double eta) {
+    
+    /**
+     * The single precision versions of {@link #calculateBatchOutput}, {@link #backpropBatchError} and
+     * {@link #accumulateBatchGradients}, on the float buffers of the NN and the workspace.
+     */
+    private void calculateFloatBatchOutput(BatchWorkspace workspace, int count) {
+        workspace.sparse = workspace.sparseInputs.collect(workspace.floatActivations[0], count);
         for (int layer = 1; layer < numberOfLayers; layer++) {
-            for (int neuron = 0; neuron < layerSizes[layer]; neuron++) {
-                
-                // Update bias
-                double delta = -eta * errorSignal[layer][neuron];
-                bias[layer][neuron] += delta;
-                
-                // Update weights
-                for (int prevNeuron = 0; prevNeuron < layerSizes[layer - 1]; prevNeuron++) {
-                    double outputPrevNeuron = output[layer-1][prevNeuron];
-                    delta *= outputPrevNeuron;
-                    weights[layer][neuron][prevNeuron] += delta;
+            int layerSize = layerSizes[layer];
+            float[] layerOutput = workspace.floatActivations[layer];
+            for (int sample = 0; sample < count; sample++) {
+                System.arraycopy(floatBias, biasOffset[layer], layerOutput, sample * layerSize, layerSize);
+            }
+            if (layer == 1 && workspace.sparse) {
+                SparseInputs sparseInputs = workspace.sparseInputs;
+                MatrixKernels.multiplyTransposedSparse(sparseInputs.floatValues, sparseInputs.indices, sparseInputs.counts, floatWeights, weightOffset[1], layerOutput, 0, count, layerSize, inputLayerSize);
+            } else {
+                MatrixKernels.multiplyTransposed(workspace.floatActivations[layer - 1], 0, floatWeights, weightOffset[layer], layerOutput, 0, count, layerSize, layerSizes[layer - 1]);
+            }
+            activations[layer - 1].apply(layerOutput, count, layerSize);
+        }
+    }
+    
+    private void backpropFloatBatchError(BatchWorkspace workspace, int count) {
+        calculateOutputErrorSignals(workspace.floatActivations[numberOfLayers - 1], workspace.floatTargets, workspace.floatErrorSignals[numberOfLayers - 1], count * outputLayerSize);
+        
+        for (int layer = numberOfLayers - 2; layer > 0; layer--) {
+            float[] layerErrorSignal = workspace.floatErrorSignals[layer];
+            Arrays.fill(layerErrorSignal, 0, count * layerSizes[layer], 0);
+            MatrixKernels.multiply(workspace.floatErrorSignals[layer + 1], 0, floatWeights, weightOffset[layer + 1], layerErrorSignal, 0, count, layerSizes[layer], layerSizes[layer + 1]);
+            activations[layer - 1].multiplyDerivative(workspace.floatActivations[layer], layerErrorSignal, count * layerSizes[layer]);
+        }
+    }
+    
+    private void calculateOutputErrorSignals(float[] outputs, float[] expectedOutputs, float[] errorSignals, int length) {
+        for (int i = 0; i < length; i++) {
+            errorSignals[i] = outputs[i] - expectedOutputs[i];
+        }
+        Activation outputActivation = activations[numberOfLayers - 2];
+        if (outputActivation != Activation.SOFTMAX) {
+            outputActivation.multiplyDerivative(outputs, errorSignals, length);
+        }
+    }
+    
+    private void accumulateFloatBatchGradients(BatchWorkspace workspace, int count) {
+        for (int layer = 1; layer < numberOfLayers; layer++) {
+            int layerSize = layerSizes[layer];
+            float[] layerErrorSignal = workspace.floatErrorSignals[layer];
+            if (layer == 1 && workspace.sparse) {
+                SparseInputs sparseInputs = workspace.sparseInputs;
+                MatrixKernels.multiplyTransposedASparse(layerErrorSignal, 0, sparseInputs.floatValues, sparseInputs.indices, sparseInputs.counts, workspace.floatWeightGradient, weightOffset[1], layerSize, inputLayerSize, count);
+            } else {
+                MatrixKernels.multiplyTransposedA(layerErrorSignal, 0, workspace.floatActivations[layer - 1], 0, workspace.floatWeightGradient, weightOffset[layer], layerSize, layerSizes[layer - 1], count);
+            }
+            for (int sample = 0; sample < count; sample++) {
+                for (int neuron = 0; neuron < layerSize; neuron++) {
+                    workspace.floatBiasGradient[biasOffset[layer] + neuron] += layerErrorSignal[sample * layerSize + neuron];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Moves all weights and biases against the average of the gradients which the workspace accumulated over the
+     * given number of samples and clears them afterwards.
+     */
+    private void applyGradients(BatchWorkspace workspace, double eta, int count, OptimizerState optimizer) {
+        long start = workspace.startPhase();
+        optimizer.nextStep();
+        if (floatWeights != null) {
+            optimizer.update(floatWeights, workspace.floatWeightGradient, 0, 0, weightCount, eta, count);
+            optimizer.update(floatBias, workspace.floatBiasGradient, weightCount, 0, biasCount, eta, count);
+            Arrays.fill(workspace.floatWeightGradient, 0);
+            Arrays.fill(workspace.floatBiasGradient, 0);
+        } else {
+            optimizer.update(weights, workspace.weightGradient, 0, 0, weightCount, eta, count);
+            optimizer.update(bias, workspace.biasGradient, weightCount, 0, biasCount, eta, count);
+            Arrays.fill(workspace.weightGradient, 0);
+            Arrays.fill(workspace.biasGradient, 0);
+        }
+        workspace.endPhase(TrainingPhase.UPDATE, start);
+    }
+    
+    /**
+     * Sums up the weight or bias gradients of the given workspaces in [from, to) into the first one, moves the
+     * parameters against the average of the sum over the given number of samples and clears the gradients afterwards.
+     */
+    private void applyGradients(BatchWorkspace[] workspaces, int workspaceCount, boolean weightGradient, int from, int to, double eta, int count, OptimizerState optimizer) {
+        int stateOffset = weightGradient ? 0 : weightCount;
+        if (floatWeights != null) {
+            float[] sum = weightGradient ? workspaces[0].floatWeightGradient : workspaces[0].floatBiasGradient;
+            for (int worker = 1; worker < workspaceCount; worker++) {
+                float[] gradient = weightGradient ? workspaces[worker].floatWeightGradient : workspaces[worker].floatBiasGradient;
+                for (int i = from; i < to; i++) {
+                    sum[i] += gradient[i];
+                }
+                Arrays.fill(gradient, from, to, 0);
+            }
+            optimizer.update(weightGradient ? floatWeights : floatBias, sum, stateOffset, from, to, eta, count);
+            Arrays.fill(sum, from, to, 0);
+            return;
+        }
+        double[] sum = weightGradient ? workspaces[0].weightGradient : workspaces[0].biasGradient;
+        for (int worker = 1; worker < workspaceCount; worker++) {
+            double[] gradient = weightGradient ? workspaces[worker].weightGradient : workspaces[worker].biasGradient;
+            for (int i = from; i < to; i++) {
+                sum[i] += gradient[i];
+            }
+            Arrays.fill(gradient, from, to, 0);
+        }
+        optimizer.update(weightGradient ? weights : bias, sum, stateOffset, from, to, eta, count);
+        Arrays.fill(sum, from, to, 0);
+    }
+    
+    /**
+     * Backpropagates the error of the sample in the workspace and moves the weights and biases against the gradient
+     * in one pass per layer, from the output layer back: every row of weights is read once to pass the error signal
+     * on to the previous layer and written once with its update, while the outputs and error signals of the previous
+     * layer stay in L1. The error signals are passed on with the weights from before the update, like in plain
+     * backpropagation. The first layer only updates the weights of the nonzero inputs if they are sparse.
+     */
+    private void backpropAndUpdate(double[] expectedOutputs, double eta, BatchWorkspace workspace) {
+        double[][] output = workspace.activations;
+        double[][] errorSignal = workspace.errorSignals;
+        calculateOutputErrorSignals(output[numberOfLayers - 1], expectedOutputs, errorSignal[numberOfLayers - 1], outputLayerSize);
+
+        for (int layer = numberOfLayers - 1; layer > 0; layer--) {
+            double[] layerErrorSignal = errorSignal[layer];
+            double[] prevOutput = output[layer - 1];
+            int prevSize = layerSizes[layer - 1];
+            int row = weightOffset[layer];
+            if (layer > 1) {
+                double[] prevErrorSignal = errorSignal[layer - 1];
+                Arrays.fill(prevErrorSignal, 0, prevSize, 0);
+                for (int neuron = 0; neuron < layerSizes[layer]; neuron++, row += prevSize) {
+                    double error = layerErrorSignal[neuron];
+                    bias[biasOffset[layer] + neuron] -= eta * error;
+                    MatrixKernels.backpropRow(error, -eta * error, weights, row, prevOutput, 0, prevErrorSignal, 0, prevSize);
+                }
+                activations[layer - 2].multiplyDerivative(prevOutput, prevErrorSignal, prevSize);
+            } else {
+                SparseInputs sparseInputs = workspace.sparseInputs;
+                for (int neuron = 0; neuron < layerSizes[layer]; neuron++, row += prevSize) {
+                    double delta = -eta * layerErrorSignal[neuron];
+                    bias[biasOffset[layer] + neuron] += delta;
+                    if (workspace.sparse) {
+                        for (int i = 0; i < sparseInputs.counts[0]; i++) {
+                            weights[row + sparseInputs.indices[i]] += delta * sparseInputs.values[i];
+                        }
+                    } else {
+                        MatrixKernels.axpy(delta, prevOutput, 0, weights, row, prevSize);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The single precision version of {@link #backpropAndUpdate(double[], double, BatchWorkspace)}.
+     */
+    private void backpropAndUpdate(float[] expectedOutputs, float eta, BatchWorkspace workspace) {
+        float[][] output = workspace.floatActivations;
+        float[][] errorSignal = workspace.floatErrorSignals;
+        calculateOutputErrorSignals(output[numberOfLayers - 1], expectedOutputs, errorSignal[numberOfLayers - 1], outputLayerSize);
+
+        for (int layer = numberOfLayers - 1; layer > 0; layer--) {
+            float[] layerErrorSignal = errorSignal[layer];
+            float[] prevOutput = output[layer - 1];
+            int prevSize = layerSizes[layer - 1];
+            int row = weightOffset[layer];
+            if (layer > 1) {
+                float[] prevErrorSignal = errorSignal[layer - 1];
+                Arrays.fill(prevErrorSignal, 0, prevSize, 0);
+                for (int neuron = 0; neuron < layerSizes[layer]; neuron++, row += prevSize) {
+                    float error = layerErrorSignal[neuron];
+                    floatBias[biasOffset[layer] + neuron] -= eta * error;
+                    MatrixKernels.backpropRow(error, -eta * error, floatWeights, row, prevOutput, 0, prevErrorSignal, 0, prevSize);
+                }
+                activations[layer - 2].multiplyDerivative(prevOutput, prevErrorSignal, prevSize);
+            } else {
+                SparseInputs sparseInputs = workspace.sparseInputs;
+                for (int neuron = 0; neuron < layerSizes[layer]; neuron++, row += prevSize) {
+                    float delta = -eta * layerErrorSignal[neuron];
+                    floatBias[biasOffset[layer] + neuron] += delta;
+                    if (workspace.sparse) {
+                        for (int i = 0; i < sparseInputs.counts[0]; i++) {
+                            floatWeights[row + sparseInputs.indices[i]] += delta * sparseInputs.floatValues[i];
+                        }
+                    } else {
+                        MatrixKernels.axpy(delta, prevOutput, 0, floatWeights, row, prevSize);
+                    }
                 }
-                
             }
         }
     }
@@ -163,33 +1044,40 @@ public class Network {
     
     public double calculateMSE(double[] input, double[] expectedOutput) {
         if (input.length != inputLayerSize || expectedOutput.length != outputLayerSize) throw new IllegalArgumentException("calculateMSE failed because of wrong Data size.");
-        calculateOutput(input);
+        return calculateSampleMSE(expectedOutput, calculateOutput(input, sampleWorkspace));
+    }
+    
+    private double calculateSampleMSE(double[] expectedOutput, double[] output) {
         double v = 0;
-        for (int i = 0; i < expectedOutput.length; i++) {
-            v += Math.pow(expectedOutput[i] - output[numberOfLayers - 1][i], 2);
+        for (int i = 0; i < outputLayerSize; i++) {
+            v += Math.pow(expectedOutput[i] - output[i], 2);
         }
-        return v / (2d * expectedOutput.length);
+        return v / (2d * outputLayerSize);
     }
     
     /**
      * Calculates the average of the Mean Squared Error of all the TrainingData in the given TrainingSet.
+     * Use an {@link Evaluator} to get the accuracy in the same pass, or to calculate it in parallel.
      *
      * @param set The given TrainingSet.
      * @return The average Mean Squared Error.
      */
     public double calcualteMSEAverage(TrainingSet set) {
-        double v = 0;
-        for (int i = 0; i < set.getDataCount(); i++) {
-            v += calculateMSE(set.getData(i));
-        }
-        return v / set.getDataCount();
+        return new Evaluator().evaluate(toInferenceModel(), set).getMse();
+    }
+    
+    /**
+     * Calculates the average of the Mean Squared Error of all the samples of the given DataSource.
+     *
+     * @param source The given DataSource.
+     * @return The average Mean Squared Error.
+     */
+    public double calcualteMSEAverage(DataSource source) throws IOException {
+        return new Evaluator().evaluate(toInferenceModel(), source).getMse();
     }
     
     
     
     
-    private double calculateSigmoidFunction(double x) {
-        return 1d / (1 + Math.exp(-x));
-    }
     
 }
@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves and loads the weights and biases of a {@link Network} in a versioned binary format.
+ * All numbers are little-endian:
+ * <pre>
+ * "MFNN"                              4 bytes
+ * version                             int
+ * number of layers                    int
+ * layer sizes                         int each
+ * activations of the layers 1 to n-1  int each, the ordinal of the {@link Activation} (since version 2)
+ * trained cycles                      int, how many training cycles the NN was trained with (since version 3)
+ * finished                            int, 1 if the training finished, 0 if it was saved in between (since version 3)
+ * zero padding to a multiple of 8
+ * weights                             double each, in the order of the flat weight buffer of the Network
+ * biases                              double each, in the order of the flat bias buffer of the Network
+ * CRC32 of all bytes before           int
+ * </pre>
+ * The doubles are stored raw, so a loaded Network calculates bit-identical outputs. Checkpoints of version 1 have
+ * no activations and are loaded with sigmoid activations. New activations are only ever appended to the enum,
+ * so the ordinals stay valid. Checkpoints before version 3 count as finished with 0 trained cycles.
+ */
+public final class NetworkCheckpoint {
+
+    private static final byte[] MAGIC = {'M', 'F', 'N', 'N'};
+    private static final int VERSION = 3;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final Network network;
+    private final int trainedCycles;
+    private final boolean finished;
+
+    private NetworkCheckpoint(Network network, int trainedCycles, boolean finished) {
+        this.network = network;
+        this.trainedCycles = trainedCycles;
+        this.finished = finished;
+    }
+
+    /**
+     * Saves the given NN as a finished one, see {@link #save(Network, Path, int, boolean)}.
+     *
+     * @param network The NN to save.
+     * @param path Where to save it.
+     */
+    public static void save(Network network, Path path) throws IOException {
+        save(network, path, 0, true);
+    }
+
+    /**
+     * Writes the given NN to a temporary file next to the given path, block by block, and then moves it over
+     * the path atomically, so the path always holds a complete checkpoint, even if saving is interrupted.
+     *
+     * @param network The NN to save.
+     * @param path Where to save it.
+     * @param trainedCycles How many training cycles the NN was trained with, or 0 if unknown.
+     * @param finished Whether the training finished, or the NN was saved in between and should be trained on.
+     */
+    public static void save(Network network, Path path, int trainedCycles, boolean finished) throws IOException {
+        if (network.getPrecision() != Precision.DOUBLE) throw new IllegalArgumentException("Only a Network in double precision can be saved.");
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        int[] layerSizes = network.getLayerSizes();
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC).putInt(VERSION).putInt(layerSizes.length);
+            for (int layerSize : layerSizes) {
+                buffer.putInt(layerSize);
+            }
+            for (Activation activation : network.getActivations()) {
+                buffer.putInt(activation.ordinal());
+            }
+            buffer.putInt(trainedCycles).putInt(finished ? 1 : 0);
+            while (buffer.position() % Double.BYTES != 0) {
+                buffer.put((byte) 0);
+            }
+            for (double[] values : new double[][]{network.getWeights(), network.getBias()}) {
+                for (double value : values) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        write(channel, buffer, crc);
+                    }
+                    buffer.putDouble(value);
+                }
+            }
+            write(channel, buffer, crc);
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Loads the NN of the given checkpoint, finished or not, see {@link #read(Path)}.
+     *
+     * @param path The checkpoint to load.
+     * @throws IOException If the file isn't a checkpoint of a supported version or is damaged.
+     */
+    public static Network load(Path path) throws IOException {
+        return read(path).getNetwork();
+    }
+
+    /**
+     * Maps the given checkpoint into memory and copies its weights and biases into a new NN.
+     *
+     * @param path The checkpoint to read.
+     * @throws IOException If the file isn't a checkpoint of a supported version or is damaged.
+     */
+    public static NetworkCheckpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("The checkpoint " + path + " is too large.");
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = file.order(ByteOrder.LITTLE_ENDIAN);
+            int length = buffer.limit();
+            if (length < 16) throw new IOException("The checkpoint " + path + " is truncated.");
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) throw new IOException("The file " + path + " is not a network checkpoint.");
+            }
+            int version = buffer.getInt(4);
+            if (version < 1 || version > VERSION) throw new IOException("Version " + version + " of the checkpoint " + path + " is not supported.");
+
+            int numberOfLayers = buffer.getInt(8);
+            if (numberOfLayers < 2 || 12 + 4L * numberOfLayers > length) throw new IOException("The checkpoint " + path + " has an invalid header.");
+            int[] layerSizes = new int[numberOfLayers];
+            for (int i = 0; i < numberOfLayers; i++) {
+                layerSizes[i] = buffer.getInt(12 + 4 * i);
+                if (layerSizes[i] < 1) throw new IOException("The checkpoint " + path + " has an invalid header.");
+            }
+            int headerSize = 12 + 4 * numberOfLayers;
+            Activation[] activations = Activation.of(Activation.SIGMOID, Activation.SIGMOID, numberOfLayers);
+            if (version > 1) {
+                if (headerSize + 4L * (numberOfLayers - 1) > length) throw new IOException("The checkpoint " + path + " has an invalid header.");
+                for (int i = 0; i < activations.length; i++) {
+                    int ordinal = buffer.getInt(headerSize + 4 * i);
+                    if (ordinal < 0 || ordinal >= Activation.values().length) throw new IOException("The checkpoint " + path + " has an invalid header.");
+                    activations[i] = Activation.values()[ordinal];
+                }
+                headerSize += 4 * activations.length;
+            }
+            int trainedCycles = 0;
+            boolean finished = true;
+            if (version > 2) {
+                if (headerSize + 8L > length) throw new IOException("The checkpoint " + path + " has an invalid header.");
+                trainedCycles = buffer.getInt(headerSize);
+                int finishedFlag = buffer.getInt(headerSize + 4);
+                if (trainedCycles < 0 || (finishedFlag != 0 && finishedFlag != 1)) throw new IOException("The checkpoint " + path + " has an invalid header.");
+                finished = finishedFlag == 1;
+                headerSize += 8;
+            }
+            int dataOffset = (headerSize + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+            long weightCount = 0;
+            long biasCount = 0;
+            for (int i = 1; i < numberOfLayers; i++) {
+                weightCount += (long) layerSizes[i] * layerSizes[i - 1];
+                biasCount += layerSizes[i];
+            }
+            if (dataOffset + (weightCount + biasCount) * Double.BYTES + 4 != length) throw new IOException("The checkpoint " + path + " is truncated.");
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(length - 4));
+            if ((int) crc.getValue() != buffer.getInt(length - 4)) throw new IOException("The checksum of the checkpoint " + path + " doesn't match, the file is damaged.");
+
+            DoubleBuffer doubles = buffer.position(dataOffset).slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            double[] weights = new double[(int) weightCount];
+            double[] bias = new double[(int) biasCount];
+            doubles.get(weights).get(bias);
+            try {
+                return new NetworkCheckpoint(new Network(layerSizes, activations, weights, bias), trainedCycles, finished);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("The checkpoint " + path + " has an invalid header.", e);
+            }
+        }
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return How many training cycles the NN was trained with, 0 if unknown.
+     */
+    public int getTrainedCycles() {
+        return trainedCycles;
+    }
+
+    /**
+     * @return Whether the training of the NN finished, or it was saved in between and should be trained on,
+     * see {@link TrainingOptions#setTrainedCycles}.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * How the weights and biases are moved against their gradients, see {@link TrainingOptions#setOptimizer}.
+ * An optimizer only holds its settings; the per-parameter state, like the velocities of momentum, is allocated in
+ * {@link #createState} by the {@link Network} which trains with the optimizer and kept until it trains with another one.
+ *
+ * @see SgdOptimizer
+ * @see MomentumOptimizer
+ * @see AdamOptimizer
+ */
+public interface Optimizer {
+
+    /**
+     * @param parameterCount How many parameters (weights and biases) the state is for.
+     */
+    OptimizerState createState(int parameterCount);
+}
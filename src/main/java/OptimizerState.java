@@ -0,0 +1,31 @@
+/**
+ * The state of an {@link Optimizer} for the parameters of one training.
+ * The weights of a {@link Network} are at the beginning of the state, its biases follow after the last weight.
+ * Different ranges of parameters may be updated by different threads at the same time.
+ */
+public interface OptimizerState {
+
+    /**
+     * Called once before the parameters are updated with the gradients of a new batch.
+     */
+    default void nextStep() {
+    }
+
+    /**
+     * Moves parameters[i] against the average gradient gradients[i] / count for i in [from, to).
+     *
+     * @param stateOffset The index in the state of parameters[0].
+     * @param eta The learning rate of the batch.
+     * @param count How many samples the gradients were summed over.
+     */
+    void update(double[] parameters, double[] gradients, int stateOffset, int from, int to, double eta, int count);
+
+    /**
+     * Like {@link #update(double[], double[], int, int, int, double, int)} for a {@link Network} in single precision.
+     *
+     * @throws UnsupportedOperationException If the optimizer doesn't support single precision.
+     */
+    default void update(float[] parameters, float[] gradients, int stateOffset, int from, int to, double eta, int count) {
+        throw new UnsupportedOperationException("This optimizer doesn't support single precision.");
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the weights and biases of a {@link Network} which several worker processes train together, each on its own
+ * shard of the samples, see {@link TrainingOptions#setParameterServer}.
+ * Every worker trains on its own copy and pushes how far its weights moved after every few batches. The server adds
+ * that delta to its weights as it is, like asynchronous SGD with a few batches of delay, and replies with its current
+ * weights, which the worker continues from. The server never waits for all workers, so a slow worker doesn't hold
+ * back the others: its deltas are applied whenever they arrive, just against weights that moved on in the meantime.
+ * A worker which disconnects or stays silent longer than the timeout is dropped and training goes on without it.
+ */
+public class ParameterServer implements AutoCloseable {
+
+    private static final long DEFAULT_TIMEOUT_SECONDS = 60;
+
+    private final Network network;
+    private final int workers;
+    private final ServerSocket serverSocket;
+    private final int timeoutMillis;
+    private final Object lock = new Object(); // Guards the weights and biases of the network
+
+    private final AtomicLong pushes = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicInteger droppedWorkers = new AtomicInteger();
+
+    /**
+     * Listens on the given port for the given number of workers, dropping a worker after 60 seconds of silence.
+     *
+     * @param network The NN to train, whose weights and biases the workers start from.
+     * @param port The port to listen on, or 0 for any free port, see {@link #getPort()}.
+     * @param workers How many workers train together.
+     */
+    public ParameterServer(Network network, int port, int workers) throws IOException {
+        this(network, port, workers, DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param network The NN to train, whose weights and biases the workers start from.
+     * @param port The port to listen on, or 0 for any free port, see {@link #getPort()}.
+     * @param workers How many workers train together.
+     * @param timeout How long to wait for a worker to connect or push before giving up on it.
+     * @param unit The unit of timeout.
+     */
+    public ParameterServer(Network network, int port, int workers, long timeout, TimeUnit unit) throws IOException {
+        if (workers < 1) throw new IllegalArgumentException("The number of workers has to be at least 1.");
+        if (timeout < 1) throw new IllegalArgumentException("The timeout has to be positive.");
+        this.network = network;
+        this.workers = workers;
+        this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, unit.toMillis(timeout));
+        this.serverSocket = new ServerSocket(port);
+        this.serverSocket.setSoTimeout(timeoutMillis);
+    }
+
+    /**
+     * Accepts the workers and exchanges the updates with every worker on its own thread, until all workers have
+     * finished their training or were dropped. The network holds the trained weights and biases afterwards.
+     * Why a worker was dropped is logged like the training, see {@link #getDroppedWorkers()}.
+     *
+     * @throws IOException If not all workers connected within the timeout.
+     */
+    public void serve() throws IOException {
+        List<Thread> threads = new ArrayList<>(workers);
+        try {
+            for (int worker = 0; worker < workers; worker++) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("Only " + worker + " of " + workers + " workers connected.", e);
+                }
+                int index = worker;
+                Thread thread = new Thread(() -> handle(socket, index), "parameter-server-worker-" + worker);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+        } finally {
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the workers.", e);
+                }
+            }
+            if (getDroppedWorkers() > 0) AsyncLog.flush();
+        }
+    }
+
+    private void handle(Socket socket, int worker) {
+        double[] weights = network.getWeights();
+        double[] bias = network.getBias();
+        float[] parameters = new float[weights.length + bias.length];
+        byte[] buffer = new byte[parameters.length * Float.BYTES];
+        try (socket) {
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            boolean accepted = ParameterServerProtocol.readHandshake(in, network.getLayerSizes(), network.getActivations());
+            ParameterServerProtocol.writeInt(out, accepted ? 1 : 0);
+            if (!accepted) {
+                out.flush();
+                throw new IOException("The layer sizes or activations of the worker didn't match the network of the server.");
+            }
+            while (true) {
+                synchronized (lock) {
+                    copyParameters(weights, bias, parameters);
+                }
+                ParameterServerProtocol.writeParameters(out, parameters, buffer);
+                out.flush();
+
+                int type;
+                try {
+                    type = ParameterServerProtocol.readInt(in);
+                } catch (EOFException e) {
+                    throw new IOException("The worker disconnected without finishing.", e);
+                }
+                if (type != ParameterServerProtocol.PUSH && type != ParameterServerProtocol.DONE) throw new IOException("Unknown message type " + type + ".");
+                samples.addAndGet(ParameterServerProtocol.readInt(in));
+                ParameterServerProtocol.readParameters(in, parameters, buffer);
+                receivedBytes.addAndGet(8 + (long) buffer.length);
+                pushes.incrementAndGet();
+                synchronized (lock) {
+                    for (int i = 0; i < weights.length; i++) {
+                        weights[i] += parameters[i];
+                    }
+                    for (int i = 0; i < bias.length; i++) {
+                        bias[i] += parameters[weights.length + i];
+                    }
+                    if (type == ParameterServerProtocol.DONE) {
+                        copyParameters(weights, bias, parameters);
+                    }
+                }
+                if (type == ParameterServerProtocol.DONE) {
+                    ParameterServerProtocol.writeParameters(out, parameters, buffer);
+                    out.flush();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            droppedWorkers.incrementAndGet();
+            AsyncLog.println("Dropped worker " + worker + ": " + e.getMessage());
+        }
+    }
+
+    private static void copyParameters(double[] weights, double[] bias, float[] parameters) {
+        for (int i = 0; i < weights.length; i++) {
+            parameters[i] = (float) weights[i];
+        }
+        for (int i = 0; i < bias.length; i++) {
+            parameters[weights.length + i] = (float) bias[i];
+        }
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return How many updates the workers pushed so far.
+     */
+    public long getPushCount() {
+        return pushes.get();
+    }
+
+    /**
+     * @return How many samples the workers reported to have trained with so far.
+     */
+    public long getSampleCount() {
+        return samples.get();
+    }
+
+    /**
+     * @return How many bytes of updates the workers pushed so far.
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * @return How many workers were dropped because they disconnected, timed out or didn't match the network.
+     */
+    public int getDroppedWorkers() {
+        return droppedWorkers.get();
+    }
+
+    /**
+     * Stops listening for workers. Connected workers are served until they finish.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
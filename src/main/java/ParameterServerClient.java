@@ -0,0 +1,137 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Connects a training {@link Network} as a worker to the {@link ParameterServer} of the options: starts from the
+ * weights and biases of the server and pushes how far they moved after every few batches, continuing from the
+ * weights the server replies with, see {@link TrainingOptions#setParameterServer}.
+ * Without a parameter server it does nothing. Gives up on a server which doesn't accept the connection within 10
+ * seconds or doesn't reply within 60 seconds, as long as the server waits for a silent worker by default.
+ */
+class ParameterServerClient {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    private final double[] weights;
+    private final double[] bias;
+    private final int syncInterval;
+    private final Socket socket; // null without a parameter server
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private final double[] synced; // The parameters of the last reply of the server
+    private final float[] parameters; // Deltas to send and parameters received
+    private final byte[] buffer;
+    private long batches;
+    private int samples; // since the last push
+
+    ParameterServerClient(Network network, TrainingOptions options) throws IOException {
+        this.weights = network.getWeights();
+        this.bias = network.getBias();
+        this.syncInterval = options.getSyncInterval();
+        InetSocketAddress address = options.getParameterServer();
+        if (address == null) {
+            this.socket = null;
+            this.in = null;
+            this.out = null;
+            this.synced = null;
+            this.parameters = null;
+            this.buffer = null;
+            return;
+        }
+        if (options.isHogwild()) throw new IllegalArgumentException("Hogwild training can't be combined with a parameter server.");
+        if (options.getPatience() > 0) throw new IllegalArgumentException("Early stopping can't be combined with a parameter server, which holds the final weights.");
+        this.synced = new double[weights.length + bias.length];
+        this.parameters = new float[synced.length];
+        this.buffer = new byte[synced.length * Float.BYTES];
+        this.socket = new Socket();
+        try {
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            ParameterServerProtocol.writeHandshake(out, network.getLayerSizes(), network.getActivations());
+            if (ParameterServerProtocol.readInt(in) != 1) throw new IOException("The parameter server at " + address + " rejected the layer sizes or activations of the network.");
+            receive();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Counts a trained batch and exchanges the updates with the server if it's time to.
+     *
+     * @param count How many samples the batch had.
+     */
+    void batchCompleted(int count) throws IOException {
+        if (socket == null) return;
+        samples += count;
+        if (++batches % syncInterval == 0) {
+            push(ParameterServerProtocol.PUSH);
+        }
+    }
+
+    /**
+     * Pushes the last updates and takes over the final weights and biases of the server.
+     *
+     * @return Whether the weights and biases were replaced.
+     */
+    boolean finish() throws IOException {
+        if (socket == null) return false;
+        try (socket) {
+            push(ParameterServerProtocol.DONE);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the connection, without a final push if {@link #finish()} wasn't called because the training failed.
+     * The server drops the worker then and goes on without it.
+     */
+    void close() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to send, the server notices the closed connection either way.
+        }
+    }
+
+    private void push(int type) throws IOException {
+        for (int i = 0; i < weights.length; i++) {
+            parameters[i] = (float) (weights[i] - synced[i]);
+        }
+        for (int i = 0; i < bias.length; i++) {
+            parameters[weights.length + i] = (float) (bias[i] - synced[weights.length + i]);
+        }
+        try {
+            ParameterServerProtocol.writeInt(out, type);
+            ParameterServerProtocol.writeInt(out, samples);
+            ParameterServerProtocol.writeParameters(out, parameters, buffer);
+            out.flush();
+            samples = 0;
+            receive();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void receive() throws IOException {
+        ParameterServerProtocol.readParameters(in, parameters, buffer);
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = synced[i] = parameters[i];
+        }
+        for (int i = 0; i < bias.length; i++) {
+            bias[i] = synced[weights.length + i] = parameters[weights.length + i];
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * The binary messages between a {@link ParameterServer} and its workers. All numbers are little-endian, the
+ * parameters are sent as floats, half the bytes of the doubles, which is precise enough for weights and their deltas:
+ * <pre>
+ * handshake, worker to server:   "MFPS", version int, number of layers int, layer sizes int each,
+ *                                the ordinals of the {@link Activation}s of the layers 1 to n-1 int each
+ * handshake, server to worker:   accepted int (1 or 0), then if accepted the parameters
+ * push, worker to server:        type int (PUSH or DONE), trained samples int, parameter deltas
+ * reply, server to worker:       the parameters
+ * </pre>
+ * The parameters are all weights followed by all biases, in the order of the flat buffers of the Network.
+ */
+final class ParameterServerProtocol {
+
+    static final byte[] MAGIC = {'M', 'F', 'P', 'S'};
+    static final int VERSION = 2;
+    static final int PUSH = 1;
+    static final int DONE = 2; // The last push of a worker, the server closes the connection after the reply.
+
+    private ParameterServerProtocol() {
+    }
+
+    static void writeHandshake(DataOutputStream out, int[] layerSizes, Activation[] activations) throws IOException {
+        out.write(MAGIC);
+        out.writeInt(Integer.reverseBytes(VERSION));
+        out.writeInt(Integer.reverseBytes(layerSizes.length));
+        for (int layerSize : layerSizes) {
+            out.writeInt(Integer.reverseBytes(layerSize));
+        }
+        for (Activation activation : activations) {
+            out.writeInt(Integer.reverseBytes(activation.ordinal()));
+        }
+        out.flush();
+    }
+
+    /**
+     * @return Whether the network of the worker has the given layer sizes and activations.
+     * @throws IOException If the worker doesn't speak this version of the protocol.
+     */
+    static boolean readHandshake(DataInputStream in, int[] layerSizes, Activation[] activations) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) throw new IOException("The connection is not from a parameter server worker.");
+        }
+        int version = readInt(in);
+        if (version != VERSION) throw new IOException("Version " + version + " of the parameter server protocol is not supported.");
+        int numberOfLayers = readInt(in);
+        if (numberOfLayers < 2 || numberOfLayers > 1024) throw new IOException("The handshake has an invalid number of layers.");
+        boolean matching = numberOfLayers == layerSizes.length;
+        for (int i = 0; i < numberOfLayers; i++) {
+            int layerSize = readInt(in);
+            if (matching && layerSize != layerSizes[i]) matching = false;
+        }
+        for (int i = 0; i < numberOfLayers - 1; i++) {
+            int ordinal = readInt(in);
+            if (matching && ordinal != activations[i].ordinal()) matching = false;
+        }
+        return matching;
+    }
+
+    static int readInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    static void writeInt(DataOutputStream out, int value) throws IOException {
+        out.writeInt(Integer.reverseBytes(value));
+    }
+
+    /**
+     * Writes the parameters as floats, using the given buffer of 4 bytes per parameter.
+     */
+    static void writeParameters(DataOutputStream out, float[] parameters, byte[] buffer) throws IOException {
+        ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(parameters);
+        out.write(buffer, 0, parameters.length * Float.BYTES);
+    }
+
+    /**
+     * Reads as many floats as the parameters array holds, using the given buffer of 4 bytes per parameter.
+     */
+    static void readParameters(DataInputStream in, float[] parameters, byte[] buffer) throws IOException {
+        in.readFully(buffer, 0, parameters.length * Float.BYTES);
+        FloatBuffer floats = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        floats.get(parameters);
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * The precision in which samples are stored and calculated.
+ */
+public enum Precision {
+    /** 64 bit double precision. */
+    DOUBLE,
+    /** 32 bit single precision, half the memory of DOUBLE. */
+    FLOAT,
+    /**
+     * Storage only: inputs as unsigned bytes in steps of 1/256 in [0, 1), expected outputs as the index of their
+     * single 1. For classification data like MNIST, an eighth of the memory of DOUBLE for the inputs.
+     */
+    UINT8
+}
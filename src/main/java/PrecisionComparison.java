@@ -0,0 +1,100 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Trains a {@link Network} in double and one in single precision from the same initial weights with the same settings
+ * and compares their accuracy, training time and memory. A third Network trains on the same data stored as UINT8.
+ * Uses MNIST if the image files are in the resources, synthetic data otherwise. Fails with an AssertionError, and so
+ * a non-zero exit code, if the test accuracy or MSE of the float or UINT8 training differs from the double training
+ * by more than 0.5 percentage points or 0.001.
+ *
+ * Arguments: [training cycles] [batch size]
+ */
+public class PrecisionComparison {
+
+    private static final double ETA = 3.0;
+    private static final double MAX_ACCURACY_DIFFERENCE = 0.5; // percentage points
+    private static final double MAX_MSE_DIFFERENCE = 0.001;
+
+    public static void main(String[] args) throws IOException {
+        int trainingCycles = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        TrainingSet doubleTrainingSet, doubleTestSet, floatTrainingSet, floatTestSet, byteTrainingSet, byteTestSet;
+        if (new File("src/main/resources/train-images.idx3-ubyte").exists()) {
+            doubleTrainingSet = MnistNumberDetector.loadTrainingSet("train-images.idx3-ubyte", "train-labels.idx1-ubyte", Precision.DOUBLE);
+            doubleTestSet = MnistNumberDetector.loadTrainingSet("t10k-images.idx3-ubyte", "t10k-labels.idx1-ubyte", Precision.DOUBLE);
+            floatTrainingSet = MnistNumberDetector.loadTrainingSet("train-images.idx3-ubyte", "train-labels.idx1-ubyte", Precision.FLOAT);
+            floatTestSet = MnistNumberDetector.loadTrainingSet("t10k-images.idx3-ubyte", "t10k-labels.idx1-ubyte", Precision.FLOAT);
+            byteTrainingSet = MnistNumberDetector.loadTrainingSet("train-images.idx3-ubyte", "train-labels.idx1-ubyte", Precision.UINT8);
+            byteTestSet = MnistNumberDetector.loadTrainingSet("t10k-images.idx3-ubyte", "t10k-labels.idx1-ubyte", Precision.UINT8);
+        } else {
+            System.out.println("No MNIST images found, using synthetic data.");
+            doubleTrainingSet = SyntheticDigits.createTrainingSet(20000, new Random(1), Precision.DOUBLE);
+            doubleTestSet = SyntheticDigits.createTrainingSet(2000, new Random(2), Precision.DOUBLE);
+            floatTrainingSet = SyntheticDigits.createTrainingSet(20000, new Random(1), Precision.FLOAT);
+            floatTestSet = SyntheticDigits.createTrainingSet(2000, new Random(2), Precision.FLOAT);
+            byteTrainingSet = SyntheticDigits.createTrainingSet(20000, new Random(1), Precision.UINT8);
+            byteTestSet = SyntheticDigits.createTrainingSet(2000, new Random(2), Precision.UINT8);
+        }
+
+        Network doubleNetwork = new Network(new Random(42), doubleTrainingSet.getInputSize(), 70, 35, doubleTrainingSet.getOutputSize());
+        Network floatNetwork = new Network(new Random(42), Precision.FLOAT, floatTrainingSet.getInputSize(), 70, 35, floatTrainingSet.getOutputSize());
+        Network byteNetwork = new Network(new Random(42), byteTrainingSet.getInputSize(), 70, 35, byteTrainingSet.getOutputSize());
+        TrainingOptions options = new TrainingOptions(ETA).setTrainingCycles(trainingCycles).setBatchSize(batchSize).setPrintLog(false);
+
+        long start = System.nanoTime();
+        doubleNetwork.trainWithDataSet(doubleTrainingSet, options);
+        double doubleSeconds = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        floatNetwork.trainWithDataSet(floatTrainingSet, options);
+        double floatSeconds = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        byteNetwork.trainWithDataSet(byteTrainingSet, options);
+        double byteSeconds = (System.nanoTime() - start) / 1e9;
+
+        int correctDouble = 0;
+        int correctFloat = 0;
+        int correctByte = 0;
+        int agreeing = 0;
+        double[] floatInput = new double[floatTestSet.getInputSize()];
+        double[] byteInput = new double[byteTestSet.getInputSize()];
+        for (int i = 0; i < doubleTestSet.getDataCount(); i++) {
+            int expectedDigit = ArrayHelperMethods.indexOfHighestValue(doubleTestSet.getOutput(i));
+            int doubleDigit = ArrayHelperMethods.indexOfHighestValue(doubleNetwork.calculateOutput(doubleTestSet.getInput(i)));
+            floatTestSet.copyInput(i, floatInput, 0);
+            int floatDigit = ArrayHelperMethods.indexOfHighestValue(floatNetwork.calculateOutput(floatInput));
+            byteTestSet.copyInput(i, byteInput, 0);
+            int byteDigit = ArrayHelperMethods.indexOfHighestValue(byteNetwork.calculateOutput(byteInput));
+            if (doubleDigit == expectedDigit) correctDouble++;
+            if (floatDigit == expectedDigit) correctFloat++;
+            if (byteDigit == byteTestSet.getLabel(i)) correctByte++;
+            if (doubleDigit == floatDigit) agreeing++;
+        }
+
+        int count = doubleTestSet.getDataCount();
+        double doubleAccuracy = correctDouble * 100.0 / count;
+        double floatAccuracy = correctFloat * 100.0 / count;
+        double byteAccuracy = correctByte * 100.0 / count;
+        double doubleMse = doubleNetwork.calcualteMSEAverage(doubleTestSet);
+        double floatMse = floatNetwork.calcualteMSEAverage(floatTestSet);
+        double byteMse = byteNetwork.calcualteMSEAverage(byteTestSet);
+        long samples = (long) doubleTrainingSet.getDataCount() + doubleTestSet.getDataCount();
+        long sampleSize = doubleTrainingSet.getInputSize() + doubleTrainingSet.getOutputSize();
+        System.out.printf("precision  training s  test accuracy  test MSE   data MB%n");
+        System.out.printf("double     %10.3f  %12.2f%%  %.6f  %7.1f%n", doubleSeconds, doubleAccuracy, doubleMse, samples * sampleSize * 8 / 1e6);
+        System.out.printf("float      %10.3f  %12.2f%%  %.6f  %7.1f%n", floatSeconds, floatAccuracy, floatMse, samples * sampleSize * 4 / 1e6);
+        System.out.printf("uint8      %10.3f  %12.2f%%  %.6f  %7.1f%n", byteSeconds, byteAccuracy, byteMse, samples * (doubleTrainingSet.getInputSize() + 1) / 1e6);
+        System.out.printf("Double and float classify %.2f%% of the test set the same.%n", agreeing * 100.0 / count);
+
+        checkDifference("float", floatAccuracy, floatMse, doubleAccuracy, doubleMse);
+        checkDifference("uint8", byteAccuracy, byteMse, doubleAccuracy, doubleMse);
+        System.out.println("Float and uint8 are within " + MAX_ACCURACY_DIFFERENCE + " percentage points and an MSE of " + MAX_MSE_DIFFERENCE + " of double.");
+    }
+
+    private static void checkDifference(String precision, double accuracy, double mse, double doubleAccuracy, double doubleMse) {
+        if (Math.abs(accuracy - doubleAccuracy) > MAX_ACCURACY_DIFFERENCE) throw new AssertionError("The test accuracy of " + precision + " differs from double by " + Math.abs(accuracy - doubleAccuracy) + " percentage points.");
+        if (Math.abs(mse - doubleMse) > MAX_MSE_DIFFERENCE) throw new AssertionError("The test MSE of " + precision + " differs from double by " + Math.abs(mse - doubleMse) + ".");
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the samples of another {@link DataSource} on a background thread, so preparing the next batches overlaps
+ * with training on the current one. The background thread gathers whole batches into a fixed number of reused
+ * buffers and hands them over through a bounded queue; with a depth of 2 one batch is prepared while the other
+ * is trained with. Only one cursor can be open at a time.
+ */
+public class PrefetchingDataSource implements DataSource {
+
+    private final DataSource source;
+    private final int batchSize;
+    private final Batch[] batches;
+    private final BlockingQueue<Batch> free;
+    private boolean cursorOpen;
+
+    /**
+     * @param source The source to read from.
+     * @param batchSize How many samples the background thread reads at once.
+     * @param depth How many batches are buffered at most, at least 1.
+     */
+    public PrefetchingDataSource(DataSource source, int batchSize, int depth) {
+        if (batchSize < 1 || depth < 1) throw new IllegalArgumentException("The batch size and depth have to be at least 1.");
+        this.source = source;
+        this.batchSize = batchSize;
+        this.batches = new Batch[depth];
+        this.free = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i < depth; i++) {
+            batches[i] = new Batch(new double[batchSize * source.getInputSize()], new double[batchSize * source.getOutputSize()]);
+        }
+    }
+
+    @Override
+    public int getInputSize() {
+        return source.getInputSize();
+    }
+
+    @Override
+    public int getOutputSize() {
+        return source.getOutputSize();
+    }
+
+    @Override
+    public int getDataCount() {
+        return source.getDataCount();
+    }
+
+    /**
+     * Starts a background thread which opens a cursor of the underlying source with the given random generator,
+     * so a shuffled source gets a new order for every pass.
+     */
+    @Override
+    public synchronized DataCursor openCursor(Random random) {
+        if (cursorOpen) throw new IllegalStateException("Only one cursor can be open at a time.");
+        cursorOpen = true;
+        free.clear();
+        for (Batch batch : batches) {
+            free.add(batch);
+        }
+        return new Cursor(random);
+    }
+
+    private synchronized void closeCursor() {
+        cursorOpen = false;
+    }
+
+    private static class Batch {
+        private final double[] inputs;
+        private final double[] targets;
+        private int count;
+
+        private Batch(double[] inputs, double[] targets) {
+            this.inputs = inputs;
+            this.targets = targets;
+        }
+    }
+
+    private class Cursor implements DataCursor {
+        private final Batch end = new Batch(null, null); // the last batch of the pass, or the stop signal for the thread
+        private final BlockingQueue<Batch> full = new ArrayBlockingQueue<>(batches.length + 1);
+        private final Thread thread;
+        private volatile Throwable failure;
+        private Batch current;
+        private int position; // in current
+        private boolean finished;
+        private boolean closed;
+
+        private Cursor(Random random) {
+            this.thread = new Thread(() -> prefetch(random), "data-prefetcher");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void prefetch(Random random) {
+            try (DataCursor cursor = source.openCursor(random)) {
+                for (Batch batch = free.take(); batch != end; batch = free.take()) {
+                    batch.count = cursor.next(batch.inputs, batch.targets, batchSize);
+                    if (batch.count == 0) break;
+                    full.add(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                full.add(end);
+            }
+        }
+
+        @Override
+        public int next(double[] inputs, double[] targets, int max) throws IOException {
+            if (closed) throw new IllegalStateException("The cursor is closed.");
+            int inputSize = getInputSize();
+            int outputSize = getOutputSize();
+            int count = 0;
+            while (count < max && !finished) {
+                if (current == null) {
+                    current = takeBatch();
+                    position = 0;
+                    if (current == end) {
+                        finished = true;
+                        current = null;
+                        rethrowFailure();
+                        break;
+                    }
+                }
+                int copied = Math.min(max - count, current.count - position);
+                System.arraycopy(current.inputs, position * inputSize, inputs, count * inputSize, copied * inputSize);
+                System.arraycopy(current.targets, position * outputSize, targets, count * outputSize, copied * outputSize);
+                position += copied;
+                count += copied;
+                if (position == current.count) {
+                    free.add(current);
+                    current = null;
+                }
+            }
+            return count;
+        }
+
+        private Batch takeBatch() throws InterruptedIOException {
+            try {
+                return full.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the next batch.");
+            }
+        }
+
+        private void rethrowFailure() throws IOException {
+            Throwable e = failure;
+            if (e == null) return;
+            if (e instanceof IOException) throw (IOException) e;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            if (e instanceof Error) throw (Error) e;
+            throw new IOException(e);
+        }
+
+        /**
+         * Stops the background thread. The thread is never interrupted, since interrupting a thread which reads
+         * from a FileChannel closes the channel.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            free.add(end);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while stopping the prefetch thread.");
+            }
+            closeCursor();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the int8 {@link QuantizedModel}s of a trained network with the double model: accuracy on the test set,
+ * how often they classify like the double model, throughput and parameter memory. Uses the network of the
+ * MNIST checkpoint and the t10k set if they exist, otherwise trains a network on synthetic data first.
+ *
+ * Arguments: [benchmark rounds]
+ */
+public class QuantizationReport {
+
+    private static final double PIXEL_SCALE = 1d / 256;
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        TrainingSet testSet;
+        Network network;
+        Path checkpoint = Paths.get("mnist-network.checkpoint");
+        if (new File("src/main/resources/t10k-images.idx3-ubyte").exists() && Files.exists(checkpoint)) {
+            testSet = MnistNumberDetector.loadTrainingSet("t10k-images.idx3-ubyte", "t10k-labels.idx1-ubyte", Precision.UINT8);
+            network = NetworkCheckpoint.load(checkpoint);
+        } else {
+            System.out.println("No MNIST test images or checkpoint found, training on synthetic data.");
+            TrainingSet trainingSet = SyntheticDigits.createTrainingSet(20000, new Random(1), Precision.UINT8);
+            testSet = SyntheticDigits.createTrainingSet(2000, new Random(2), Precision.UINT8);
+            network = new Network(new Random(42), trainingSet.getInputSize(), 70, 35, trainingSet.getOutputSize());
+            network.trainWithDataSet(trainingSet, new TrainingOptions(3.0).setTrainingCycles(3).setBatchSize(10).setPrintLog(false));
+        }
+
+        int count = testSet.getDataCount();
+        int inputSize = testSet.getInputSize();
+        double[] inputs = new double[count * inputSize];
+        byte[] pixels = new byte[count * inputSize];
+        int[] labels = new int[count];
+        for (int i = 0; i < count; i++) {
+            testSet.copyInput(i, inputs, i * inputSize);
+            testSet.copyInput(i, pixels, i * inputSize);
+            labels[i] = testSet.getLabel(i);
+        }
+
+        InferenceModel model = network.toInferenceModel();
+        InferenceSession session = model.newSession();
+        List<QuantizedModel> quantizedModels = new ArrayList<>();
+        quantizedModels.add(model.quantize(PIXEL_SCALE, false));
+        if (model.canQuantizeActivations()) {
+            quantizedModels.add(model.quantize(PIXEL_SCALE, true));
+        } else {
+            System.out.println("The hidden layers don't use sigmoid, so their activations are kept as doubles.");
+        }
+        int[] expected = new int[count];
+        int correct = 0;
+        for (int i = 0; i < count; i++) {
+            expected[i] = ArrayHelperMethods.indexOfHighestValue(session.calculateOutput(inputs, i * inputSize));
+            if (expected[i] == labels[i]) correct++;
+        }
+        double accuracy = correct * 100.0 / count;
+
+        // The models take turns, so every one is measured with a warm JIT, and the best round of each counts.
+        QuantizedSession[] quantizedSessions = new QuantizedSession[quantizedModels.size()];
+        for (int q = 0; q < quantizedSessions.length; q++) {
+            quantizedSessions[q] = quantizedModels.get(q).newSession();
+        }
+        double doubleSamplesPerSecond = 0;
+        double[] quantizedSamplesPerSecond = new double[quantizedSessions.length];
+        for (int round = 0; round < rounds; round++) {
+            doubleSamplesPerSecond = Math.max(doubleSamplesPerSecond, measureDouble(session, inputs, count, inputSize));
+            for (int q = 0; q < quantizedSessions.length; q++) {
+                quantizedSamplesPerSecond[q] = Math.max(quantizedSamplesPerSecond[q], measureQuantized(quantizedSessions[q], pixels, count, inputSize));
+            }
+        }
+
+        System.out.println("model                    accuracy     delta  agreement  samples/s  parameter KB");
+        long parameterBytes = (long) Double.BYTES * (network.getWeights().length + network.getBias().length);
+        System.out.printf("double                  %8.2f%%  %+7.2f%%  %8.2f%%  %9.0f  %12.1f%n", accuracy, 0.0, 100.0, doubleSamplesPerSecond, parameterBytes / 1024.0);
+        for (int q = 0; q < quantizedSessions.length; q++) {
+            QuantizedModel quantizedModel = quantizedModels.get(q);
+            int quantizedCorrect = 0;
+            int agreeing = 0;
+            for (int i = 0; i < count; i++) {
+                int digit = ArrayHelperMethods.indexOfHighestValue(quantizedSessions[q].calculateOutput(pixels, i * inputSize));
+                if (digit == labels[i]) quantizedCorrect++;
+                if (digit == expected[i]) agreeing++;
+            }
+            double quantizedAccuracy = quantizedCorrect * 100.0 / count;
+            String name = quantizedModel.isQuantizedActivations() ? "int8 weights+activations" : "int8 weights";
+            System.out.printf("%-23s %8.2f%%  %+7.2f%%  %8.2f%%  %9.0f  %12.1f%n", name, quantizedAccuracy, quantizedAccuracy - accuracy, agreeing * 100.0 / count,
+                    quantizedSamplesPerSecond[q], quantizedModel.getParameterBytes() / 1024.0);
+        }
+        System.out.printf("test inputs: %.1f KB as bytes, %.1f KB as doubles%n", pixels.length / 1024.0, inputs.length * (double) Double.BYTES / 1024);
+    }
+
+    /**
+     * @return The samples per second of one pass over the inputs.
+     */
+    private static double measureDouble(InferenceSession session, double[] inputs, int count, int inputSize) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            session.calculateOutput(inputs, i * inputSize);
+        }
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * @return The samples per second of one pass over the inputs.
+     */
+    private static double measureQuantized(QuantizedSession session, byte[] pixels, int count, int inputSize) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            session.calculateOutput(pixels, i * inputSize);
+        }
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+}
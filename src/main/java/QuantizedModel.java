@@ -0,0 +1,178 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * An immutable int8 copy of an {@link InferenceModel}, created by {@link InferenceModel#quantize}.
+ * Every row of weights (the weights of one neuron) is scaled to [-127, 127] with its own scale and rounded to a byte,
+ * an eighth of the memory of the doubles. The inputs are unsigned bytes, like MNIST pixels, which are multiplied
+ * with the weights in int arithmetic and only converted back with the scales of the row and the input once per neuron.
+ * The first layer only adds up the weights of the nonzero inputs, so its weights are stored transposed, the weights
+ * of one input next to each other.
+ * Hidden activations are either kept as doubles or, if they are all sigmoid, quantized to unsigned bytes
+ * (activation * 255) as well.
+ * Like the model, the sessions of {@link #newSession()} calculate the outputs.
+ */
+public final class QuantizedModel {
+
+    private static final double ACTIVATION_SCALE = 1d / 255;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final int numberOfLayers;
+    private final int[] layerSizes;
+    private final byte[] weights; // Same layout as in Network, but the first layer is transposed ([input][neuron])
+    private final double[] rowScales; // Same layout as the biases
+    private final double[] bias;
+    private final int[] weightOffset;
+    private final int[] biasOffset;
+    private final double inputScale;
+    private final boolean quantizedActivations;
+    private final Activation[] activations; // Same layout as in Network
+    private final SigmoidMode sigmoidMode;
+
+    QuantizedModel(int[] layerSizes, Activation[] activations, double[] weights, int[] weightOffset, double[] bias, int[] biasOffset, SigmoidMode sigmoidMode, double inputScale, boolean quantizedActivations) {
+        for (int layer = 1; quantizedActivations && layer < layerSizes.length - 1; layer++) {
+            if (activations[layer - 1] != Activation.SIGMOID) throw new IllegalArgumentException("Only sigmoid activations in [0, 1] can be quantized to bytes, layer " + layer + " uses " + activations[layer - 1] + ".");
+        }
+        this.numberOfLayers = layerSizes.length;
+        this.activations = activations.clone();
+        this.layerSizes = layerSizes.clone();
+        this.weightOffset = weightOffset.clone();
+        this.biasOffset = biasOffset.clone();
+        this.bias = bias.clone();
+        this.sigmoidMode = sigmoidMode;
+        this.inputScale = inputScale;
+        this.quantizedActivations = quantizedActivations;
+
+        this.weights = new byte[weights.length];
+        this.rowScales = new double[bias.length];
+        for (int layer = 1; layer < numberOfLayers; layer++) {
+            int prevSize = layerSizes[layer - 1];
+            for (int neuron = 0; neuron < layerSizes[layer]; neuron++) {
+                int row = weightOffset[layer] + neuron * prevSize;
+                double maxAbsolute = 0;
+                for (int i = row; i < row + prevSize; i++) {
+                    maxAbsolute = Math.max(maxAbsolute, Math.abs(weights[i]));
+                }
+                double scale = maxAbsolute > 0 ? maxAbsolute / 127 : 1;
+                rowScales[biasOffset[layer] + neuron] = scale;
+                for (int i = 0; i < prevSize; i++) {
+                    int index = layer == 1 ? weightOffset[1] + i * layerSizes[1] + neuron : row + i;
+                    this.weights[index] = (byte) Math.round(weights[row + i] / scale);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a new session with its own preallocated buffers. A session must only be used by one thread at a time.
+     */
+    public QuantizedSession newSession() {
+        return new QuantizedSession(this);
+    }
+
+    /**
+     * Calculates the outputs of all layers for the input bytes at the given offset and writes them into
+     * activations[1..], and with quantized activations the hidden ones into quantized[1..] as well.
+     * The first layer skips the zero inputs, like {@link SparseInputs}.
+     *
+     * @param sums Scratch space for the int dot products of a layer, as long as the largest layer.
+     * @param nonzeroValues Scratch space for the nonzero inputs, as long as the input layer.
+     * @param nonzeroIndices Scratch space for the indices of the nonzero inputs, as long as the input layer.
+     */
+    void calculateOutput(byte[] input, int offset, byte[][] quantized, double[][] activations, int[] sums, int[] nonzeroValues, int[] nonzeroIndices) {
+        for (int layer = 1; layer < numberOfLayers; layer++) {
+            int prevSize = layerSizes[layer - 1];
+            int layerSize = layerSizes[layer];
+            double[] layerOutput = activations[layer];
+            int row = weightOffset[layer];
+            if (layer == 1 || quantizedActivations) {
+                double prevScale = layer == 1 ? inputScale : ACTIVATION_SCALE;
+                if (layer == 1) {
+                    Arrays.fill(sums, 0, layerSize, 0);
+                    int count = collectNonzeros(input, offset, nonzeroValues, nonzeroIndices);
+                    MatrixKernels.multiplySparseBytes(nonzeroValues, nonzeroIndices, count, weights, row, sums, layerSize);
+                } else {
+                    MatrixKernels.multiplyBytes(weights, row, quantized[layer - 1], 0, sums, layerSize, prevSize);
+                }
+                for (int neuron = 0; neuron < layerSize; neuron++) {
+                    int b = biasOffset[layer] + neuron;
+                    layerOutput[neuron] = sums[neuron] * rowScales[b] * prevScale + bias[b];
+                }
+            } else {
+                MatrixKernels.multiplyBytes(weights, row, activations[layer - 1], 0, layerOutput, layerSize, prevSize);
+                for (int neuron = 0; neuron < layerSize; neuron++) {
+                    int b = biasOffset[layer] + neuron;
+                    layerOutput[neuron] = layerOutput[neuron] * rowScales[b] + bias[b];
+                }
+            }
+            this.activations[layer - 1].apply(layerOutput, 1, layerSize, sigmoidMode);
+            if (quantizedActivations && layer < numberOfLayers - 1) {
+                for (int neuron = 0; neuron < layerSize; neuron++) {
+                    quantized[layer][neuron] = (byte) Math.round(layerOutput[neuron] * 255);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the nonzero input bytes at the given offset as ints, like {@link SparseInputs#collect}.
+     * Eight bytes which are all zero, like the border of an image, are skipped at once.
+     *
+     * @return How many there are.
+     */
+    private int collectNonzeros(byte[] input, int offset, int[] values, int[] indices) {
+        int count = 0;
+        int i = 0;
+        for (; i + 7 < layerSizes[0]; i += 8) {
+            if ((long) LONGS.get(input, offset + i) == 0) continue;
+            for (int j = i; j < i + 8; j++) {
+                count = collect(input[offset + j], j, values, indices, count);
+            }
+        }
+        for (; i < layerSizes[0]; i++) {
+            count = collect(input[offset + i], i, values, indices, count);
+        }
+        return count;
+    }
+
+    private static int collect(byte input, int index, int[] values, int[] indices, int count) {
+        // Written unconditionally and only kept if nonzero, which avoids a branch on the unpredictable pixels.
+        int value = input & 0xFF;
+        values[count] = value;
+        indices[count] = index;
+        return count + (value != 0 ? 1 : 0);
+    }
+
+    /**
+     * @return The bytes of the weights, scales and biases.
+     */
+    public long getParameterBytes() {
+        return weights.length + (long) Double.BYTES * (rowScales.length + bias.length);
+    }
+
+    public boolean isQuantizedActivations() {
+        return quantizedActivations;
+    }
+
+    public double getInputScale() {
+        return inputScale;
+    }
+
+    public int getNumberOfLayers() {
+        return numberOfLayers;
+    }
+
+    public int getLayerSize(int layer) {
+        return layerSizes[layer];
+    }
+
+    public int getInputSize() {
+        return layerSizes[0];
+    }
+
+    public int getOutputSize() {
+        return layerSizes[numberOfLayers - 1];
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Calculates outputs of a {@link QuantizedModel} without allocating anything per call.
+ * A session owns the activation buffers of all layers, so it is not thread-safe: every thread needs its own session.
+ */
+public final class QuantizedSession {
+
+    private final QuantizedModel model;
+    private final double[][] activations; //[layers][neuron], activations[0] is unused
+    private final byte[][] quantized; //[layers][neuron], only used for the hidden layers with quantized activations
+    private final int[] sums; //[neuron], the int dot products of a layer
+    private final int[] nonzeroValues; // The nonzero input bytes
+    private final int[] nonzeroIndices; // The input neuron of every nonzero value
+
+    QuantizedSession(QuantizedModel model) {
+        this.model = model;
+        this.activations = new double[model.getNumberOfLayers()][];
+        this.quantized = new byte[model.getNumberOfLayers()][];
+        activations[0] = new double[0];
+        int maxLayerSize = 0;
+        for (int layer = 1; layer < activations.length; layer++) {
+            activations[layer] = new double[model.getLayerSize(layer)];
+            quantized[layer] = new byte[model.isQuantizedActivations() ? model.getLayerSize(layer) : 0];
+            maxLayerSize = Math.max(maxLayerSize, model.getLayerSize(layer));
+        }
+        this.sums = new int[maxLayerSize];
+        this.nonzeroValues = new int[model.getInputSize()];
+        this.nonzeroIndices = new int[model.getInputSize()];
+    }
+
+    /**
+     * Calculates the output for the given input.
+     *
+     * @param input The input as unsigned bytes, each standing for byte * the input scale of the model.
+     * @return The output of the last layer. The array belongs to this session and is overwritten by the next call.
+     */
+    public double[] calculateOutput(byte[] input) {
+        if (input.length != model.getInputSize()) throw new IllegalArgumentException("The size of the input did not match the size of the input layer.");
+        return calculateOutput(input, 0);
+    }
+
+    /**
+     * Calculates the output for the input which starts at the given offset of the array.
+     *
+     * @return The output of the last layer. The array belongs to this session and is overwritten by the next call.
+     */
+    public double[] calculateOutput(byte[] inputs, int offset) {
+        if (offset < 0 || offset + model.getInputSize() > inputs.length) throw new IllegalArgumentException("The size of the input did not match the size of the input layer.");
+        model.calculateOutput(inputs, offset, quantized, activations, sums, nonzeroValues, nonzeroIndices);
+        return activations[activations.length - 1];
+    }
+
+    /**
+     * @return The index of the output neuron with the highest output for the given input.
+     */
+    public int classify(byte[] input) {
+        return ArrayHelperMethods.indexOfHighestValue(calculateOutput(input));
+    }
+
+    public QuantizedModel getModel() {
+        return model;
+    }
+}
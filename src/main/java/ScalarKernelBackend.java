@@ -0,0 +1,218 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Plain Java loops, which C2 vectorizes where it can. Used whenever the Vector API isn't available.
+ */
+final class ScalarKernelBackend implements KernelBackend {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long SIGN_BITS = 0x8080808080808080L;
+    private static final long LANE_BYTES = 0x000000FF000000FFL; // The lowest byte of both 32-bit lanes
+    private static final int MAX_LANE_PRODUCTS = (int) (0xFFFFFFFFL / (255 * 255)); // Before a 32-bit lane overflows
+    private static final double[] BYTE_VALUES = new double[256]; // Looking a byte up is faster than converting it
+
+    static {
+        for (int i = 0; i < BYTE_VALUES.length; i++) {
+            BYTE_VALUES[i] = (byte) i;
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dotBytes(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * (b[bOffset + i] & 0xFF);
+        }
+        return sum;
+    }
+
+    @Override
+    public void dot4Bytes(byte[] a, int aOffset, int aStride, byte[] b, int bOffset, int length, int[] c, int cOffset) {
+        int a0 = aOffset;
+        int a1 = a0 + aStride;
+        int a2 = a1 + aStride;
+        int a3 = a2 + aStride;
+        int sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        for (int i = 0; i < length; i++) {
+            int value = b[bOffset + i] & 0xFF;
+            sum0 += a[a0 + i] * value;
+            sum1 += a[a1 + i] * value;
+            sum2 += a[a2 + i] * value;
+            sum3 += a[a3 + i] * value;
+        }
+        c[cOffset] = sum0;
+        c[cOffset + 1] = sum1;
+        c[cOffset + 2] = sum2;
+        c[cOffset + 3] = sum3;
+    }
+
+    @Override
+    public void dot4Bytes(byte[] a, int aOffset, int aStride, double[] b, int bOffset, int length, double[] c, int cOffset) {
+        int a0 = aOffset;
+        int a1 = a0 + aStride;
+        int a2 = a1 + aStride;
+        int a3 = a2 + aStride;
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        for (int i = 0; i < length; i++) {
+            double value = b[bOffset + i];
+            sum0 += BYTE_VALUES[a[a0 + i] & 0xFF] * value;
+            sum1 += BYTE_VALUES[a[a1 + i] & 0xFF] * value;
+            sum2 += BYTE_VALUES[a[a2 + i] & 0xFF] * value;
+            sum3 += BYTE_VALUES[a[a3 + i] & 0xFF] * value;
+        }
+        c[cOffset] = sum0;
+        c[cOffset + 1] = sum1;
+        c[cOffset + 2] = sum2;
+        c[cOffset + 3] = sum3;
+    }
+
+    @Override
+    public void multiplySparseBytes(int[] values, int[] indices, int count, byte[] a, int aOffset, int[] c, int n) {
+        // Eight bytes of a row at once: flipping their sign bits turns them into the unsigned bytes + 128, which are
+        // spread over four longs with two 32-bit lanes each. The products of at most 255 * 255 are summed up in their
+        // lanes without carrying into the next one, and 128 * the sum of the values is subtracted at the end.
+        int valueSum = 0;
+        for (int p = 0; p < count; p++) {
+            valueSum += values[p];
+        }
+        long offsetSum = 128L * valueSum;
+        int i = 0;
+        for (; i + 7 < n && count <= MAX_LANE_PRODUCTS; i += 8) {
+            long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+            for (int p = 0; p < count; p++) {
+                long bytes = (long) LONGS.get(a, aOffset + indices[p] * n + i) ^ SIGN_BITS;
+                long value = values[p];
+                sum0 += value * (bytes & LANE_BYTES);
+                sum1 += value * (bytes >>> 8 & LANE_BYTES);
+                sum2 += value * (bytes >>> 16 & LANE_BYTES);
+                sum3 += value * (bytes >>> 24 & LANE_BYTES);
+            }
+            c[i] += (int) ((sum0 & 0xFFFFFFFFL) - offsetSum);
+            c[i + 1] += (int) ((sum1 & 0xFFFFFFFFL) - offsetSum);
+            c[i + 2] += (int) ((sum2 & 0xFFFFFFFFL) - offsetSum);
+            c[i + 3] += (int) ((sum3 & 0xFFFFFFFFL) - offsetSum);
+            c[i + 4] += (int) ((sum0 >>> 32) - offsetSum);
+            c[i + 5] += (int) ((sum1 >>> 32) - offsetSum);
+            c[i + 6] += (int) ((sum2 >>> 32) - offsetSum);
+            c[i + 7] += (int) ((sum3 >>> 32) - offsetSum);
+        }
+        for (; i < n; i++) {
+            int sum = 0;
+            for (int p = 0; p < count; p++) {
+                sum += a[aOffset + indices[p] * n + i] * values[p];
+            }
+            c[i] += sum;
+        }
+    }
+
+    @Override
+    public void dot4(double[] a, int aOffset, double[] b, int bOffset, int bStride, int length, double[] c, int cOffset) {
+        int b0 = bOffset;
+        int b1 = b0 + bStride;
+        int b2 = b1 + bStride;
+        int b3 = b2 + bStride;
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        for (int p = 0; p < length; p++) {
+            double value = a[aOffset + p];
+            sum0 += value * b[b0 + p];
+            sum1 += value * b[b1 + p];
+            sum2 += value * b[b2 + p];
+            sum3 += value * b[b3 + p];
+        }
+        c[cOffset] += sum0;
+        c[cOffset + 1] += sum1;
+        c[cOffset + 2] += sum2;
+        c[cOffset + 3] += sum3;
+    }
+
+    @Override
+    public void dot4(float[] a, int aOffset, float[] b, int bOffset, int bStride, int length, float[] c, int cOffset) {
+        int b0 = bOffset;
+        int b1 = b0 + bStride;
+        int b2 = b1 + bStride;
+        int b3 = b2 + bStride;
+        float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        for (int p = 0; p < length; p++) {
+            float value = a[aOffset + p];
+            sum0 += value * b[b0 + p];
+            sum1 += value * b[b1 + p];
+            sum2 += value * b[b2 + p];
+            sum3 += value * b[b3 + p];
+        }
+        c[cOffset] += sum0;
+        c[cOffset + 1] += sum1;
+        c[cOffset + 2] += sum2;
+        c[cOffset + 3] += sum3;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void backpropRow(double alpha, double beta, double[] w, int wOffset, double[] x, int xOffset, double[] error, int errorOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            double weight = w[wOffset + i];
+            error[errorOffset + i] += alpha * weight;
+            w[wOffset + i] = weight + beta * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void backpropRow(float alpha, float beta, float[] w, int wOffset, float[] x, int xOffset, float[] error, int errorOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            float weight = w[wOffset + i];
+            error[errorOffset + i] += alpha * weight;
+            w[wOffset + i] = weight + beta * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            values[i] = 1d / (1 + Math.exp(-values[i]));
+        }
+    }
+
+    @Override
+    public void sigmoid(float[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            values[i] = (float) (1d / (1 + Math.exp(-values[i])));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
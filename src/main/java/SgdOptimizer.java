@@ -0,0 +1,27 @@
+/**
+ * Plain stochastic gradient descent: every parameter moves by eta times its gradient. Needs no state.
+ * Training with single samples updates the weights in the same pass as the backpropagation only with this optimizer.
+ */
+public class SgdOptimizer implements Optimizer {
+
+    @Override
+    public OptimizerState createState(int parameterCount) {
+        return new OptimizerState() {
+            @Override
+            public void update(double[] parameters, double[] gradients, int stateOffset, int from, int to, double eta, int count) {
+                double rate = eta / count;
+                for (int i = from; i < to; i++) {
+                    parameters[i] -= rate * gradients[i];
+                }
+            }
+
+            @Override
+            public void update(float[] parameters, float[] gradients, int stateOffset, int from, int to, double eta, int count) {
+                float rate = (float) (eta / count);
+                for (int i = from; i < to; i++) {
+                    parameters[i] -= rate * gradients[i];
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * The ways the sigmoid function 1 / (1 + e^-x) can be calculated.
+ * The approximations replace the call to Math.exp with a few multiplications and table reads. Their maximum
+ * absolute error over all doubles is documented on each mode; they are exactly 0.5 at 0, monotonic and stay
+ * within [0, 1].
+ */
+public enum SigmoidMode {
+
+    /**
+     * Math.exp, or the exp of the Vector API kernels. Max absolute error: a few ulps.
+     */
+    EXACT {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            MatrixKernels.sigmoid(values, offset, length);
+        }
+    },
+
+    /**
+     * Cubic Hermite polynomials on segments of width 1/4 over [0, 16), mirrored for negative inputs and
+     * saturated to 0 or 1 beyond. Max absolute error: 2e-6.
+     */
+    PIECEWISE_POLYNOMIAL {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                double x = values[i];
+                double absolute = Math.abs(x);
+                double y;
+                if (absolute < RANGE) {
+                    double position = absolute * POLYNOMIAL_SEGMENTS_PER_UNIT;
+                    int segment = (int) position;
+                    double t = position - segment;
+                    int c = segment * 4;
+                    y = POLYNOMIALS[c] + t * (POLYNOMIALS[c + 1] + t * (POLYNOMIALS[c + 2] + t * POLYNOMIALS[c + 3]));
+                } else {
+                    y = 1;
+                }
+                values[i] = x < 0 ? 1 - y : y;
+            }
+        }
+    },
+
+    /**
+     * Linear interpolation in a table of 2049 sigmoid values over [-16, 16], saturated to 0 or 1 beyond.
+     * Max absolute error: 3e-6.
+     */
+    LOOKUP_TABLE {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                double x = values[i];
+                if (x <= -RANGE) {
+                    values[i] = 0;
+                } else if (x >= RANGE) {
+                    values[i] = 1;
+                } else {
+                    double position = (x + RANGE) * TABLE_ENTRIES_PER_UNIT;
+                    int index = (int) position;
+                    double t = position - index;
+                    values[i] = TABLE[index] + t * (TABLE[index + 1] - TABLE[index]);
+                }
+            }
+        }
+    };
+
+    private static final double RANGE = 16; // 1 - sigmoid(16) is about 1.1e-7
+    private static final int POLYNOMIAL_SEGMENTS_PER_UNIT = 4;
+    private static final int TABLE_ENTRIES_PER_UNIT = 64;
+
+    private static final double[] POLYNOMIALS = createPolynomials(); //[segment * 4 + power]
+    private static final double[] TABLE = createTable();
+
+    /**
+     * Replaces every value in [offset, offset + length) with its sigmoid.
+     */
+    public abstract void apply(double[] values, int offset, int length);
+
+    /**
+     * Cubic Hermite interpolation between the exact values and derivatives at the ends of every segment,
+     * in the local coordinate t in [0, 1) of the segment.
+     */
+    private static double[] createPolynomials() {
+        int segments = (int) RANGE * POLYNOMIAL_SEGMENTS_PER_UNIT;
+        double width = 1d / POLYNOMIAL_SEGMENTS_PER_UNIT;
+        double[] polynomials = new double[segments * 4];
+        for (int segment = 0; segment < segments; segment++) {
+            double y0 = exactSigmoid(segment * width);
+            double y1 = exactSigmoid((segment + 1) * width);
+            double d0 = y0 * (1 - y0) * width;
+            double d1 = y1 * (1 - y1) * width;
+            polynomials[segment * 4] = y0;
+            polynomials[segment * 4 + 1] = d0;
+            polynomials[segment * 4 + 2] = 3 * (y1 - y0) - 2 * d0 - d1;
+            polynomials[segment * 4 + 3] = 2 * (y0 - y1) + d0 + d1;
+        }
+        return polynomials;
+    }
+
+    private static double[] createTable() {
+        int entries = (int) (2 * RANGE) * TABLE_ENTRIES_PER_UNIT + 1;
+        double[] table = new double[entries];
+        for (int i = 0; i < entries; i++) {
+            table[i] = exactSigmoid(i / (double) TABLE_ENTRIES_PER_UNIT - RANGE);
+        }
+        return table;
+    }
+
+    private static double exactSigmoid(double x) {
+        return 1d / (1 + Math.exp(-x));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Checks the documented properties of every {@link SigmoidMode}: sweeps the inputs in small steps over [-40, 40]
+ * plus some extreme values and compares them with 1 / (1 + e^-x). Fails with an AssertionError, and so a non-zero
+ * exit code, if a mode exceeds its maximum absolute error, isn't exactly 0.5 at 0, leaves [0, 1] or isn't monotonic.
+ *
+ * Arguments: [steps per unit]
+ */
+public class SigmoidModeAccuracy {
+
+    private static final double RANGE = 40;
+    private static final double[] EXTREMES = {-Double.MAX_VALUE, -1e300, -745, -709, -37, -16, -Double.MIN_VALUE, -0.0, 0,
+            Double.MIN_VALUE, 16, 37, 709, 745, 1e300, Double.MAX_VALUE, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+
+    public static void main(String[] args) {
+        int stepsPerUnit = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int count = (int) (2 * RANGE * stepsPerUnit) + 1;
+        double[] inputs = new double[count];
+        for (int i = 0; i < count; i++) {
+            inputs[i] = -RANGE + i / (double) stepsPerUnit;
+        }
+
+        System.out.println("mode                  max error   bound     at x");
+        for (SigmoidMode mode : SigmoidMode.values()) {
+            double bound = getMaxError(mode);
+            double[] values = inputs.clone();
+            mode.apply(values, 0, values.length);
+            double maxError = 0;
+            double maxErrorAt = 0;
+            for (int i = 0; i < count; i++) {
+                double error = Math.abs(values[i] - exactSigmoid(inputs[i]));
+                if (error > maxError) {
+                    maxError = error;
+                    maxErrorAt = inputs[i];
+                }
+                check(values[i] >= 0 && values[i] <= 1, mode + " leaves [0, 1] at " + inputs[i] + ": " + values[i]);
+                check(i == 0 || values[i] >= values[i - 1], mode + " is not monotonic at " + inputs[i] + ".");
+            }
+            System.out.printf("%-20s  %.3e  %.0e  %8.4f%n", mode, maxError, bound, maxErrorAt);
+            check(maxError <= bound, mode + " exceeds its max error " + bound + " with " + maxError + " at " + maxErrorAt + ".");
+
+            double[] extremes = EXTREMES.clone();
+            mode.apply(extremes, 0, extremes.length);
+            for (int i = 0; i < extremes.length; i++) {
+                double error = Math.abs(extremes[i] - exactSigmoid(EXTREMES[i]));
+                check(error <= bound, mode + " exceeds its max error " + bound + " with " + error + " at " + EXTREMES[i] + ".");
+            }
+
+            double[] zero = {0};
+            mode.apply(zero, 0, 1);
+            check(zero[0] == 0.5, mode + " is " + zero[0] + " at 0 instead of 0.5.");
+        }
+        System.out.println("All sigmoid modes are within their documented bounds.");
+    }
+
+    /**
+     * @return The maximum absolute error documented on the mode.
+     */
+    private static double getMaxError(SigmoidMode mode) {
+        switch (mode) {
+            case EXACT:
+                return 1e-15; // a few ulps of values up to 1
+            case PIECEWISE_POLYNOMIAL:
+                return 2e-6;
+            case LOOKUP_TABLE:
+                return 3e-6;
+            default:
+                throw new IllegalArgumentException("No documented max error for " + mode + ".");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    private static double exactSigmoid(double x) {
+        return 1d / (1 + Math.exp(-x));
+    }
+}
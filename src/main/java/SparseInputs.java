@@ -0,0 +1,81 @@
+/**
+ * The nonzero inputs of a batch, for the first layer to skip the zero inputs. MNIST images are about 80% black
+ * pixels, so the first layer, which has by far the most weights, only needs a fifth of its multiplications.
+ * Collecting the nonzero inputs costs one pass over the inputs, a fraction of a single neuron of the first layer.
+ */
+final class SparseInputs {
+
+    /**
+     * Above this share of nonzero inputs the dense kernels are faster than the gathers of the sparse ones.
+     */
+    static final double MAX_DENSITY = 0.5;
+
+    final int inputSize;
+    final double[] values; //[sample * inputSize + i], the nonzero inputs of every sample, null in single precision
+    final float[] floatValues; // The same in single precision, null in double precision
+    final int[] indices; // The input neuron of every value
+    final int[] counts; //[sample], how many nonzero inputs the sample has
+
+    SparseInputs(int capacity, int inputSize) {
+        this(capacity, inputSize, Precision.DOUBLE);
+    }
+
+    /**
+     * @param precision The precision of the inputs, DOUBLE or FLOAT.
+     */
+    SparseInputs(int capacity, int inputSize, Precision precision) {
+        this.inputSize = inputSize;
+        this.values = precision == Precision.DOUBLE ? new double[capacity * inputSize] : null;
+        this.floatValues = precision == Precision.FLOAT ? new float[capacity * inputSize] : null;
+        this.indices = new int[capacity * inputSize];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Collects the nonzero inputs of the first count samples of inputs ([sample * inputSize + neuron]).
+     *
+     * @return Whether the inputs are sparse enough to be worth the sparse kernels. If not, only some samples
+     *         might have been collected.
+     */
+    boolean collect(double[] inputs, int count) {
+        long maxNonzeros = (long) (MAX_DENSITY * count * inputSize);
+        long nonzeros = 0;
+        for (int sample = 0; sample < count; sample++) {
+            int row = sample * inputSize;
+            int found = 0;
+            for (int i = 0; i < inputSize; i++) {
+                // Written unconditionally and only kept if nonzero, which avoids a branch on the unpredictable pixels.
+                double value = inputs[row + i];
+                values[row + found] = value;
+                indices[row + found] = i;
+                found += value != 0 ? 1 : 0;
+            }
+            counts[sample] = found;
+            nonzeros += found;
+            if (nonzeros > maxNonzeros) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Like {@link #collect(double[], int)} for inputs in single precision.
+     */
+    boolean collect(float[] inputs, int count) {
+        long maxNonzeros = (long) (MAX_DENSITY * count * inputSize);
+        long nonzeros = 0;
+        for (int sample = 0; sample < count; sample++) {
+            int row = sample * inputSize;
+            int found = 0;
+            for (int i = 0; i < inputSize; i++) {
+                float value = inputs[row + i];
+                floatValues[row + found] = value;
+                indices[row + found] = i;
+                found += value != 0 ? 1 : 0;
+            }
+            counts[sample] = found;
+            nonzeros += found;
+            if (nonzeros > maxNonzeros) return false;
+        }
+        return true;
+    }
+}
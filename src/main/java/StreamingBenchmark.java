@@ -0,0 +1,80 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the training time of a Network trained from an in-memory {@link TrainingSet} with one trained from
+ * an {@link IdxDataSource} streaming the same files from disk. Uses the MNIST training files if they are in the
+ * resources, otherwise writes synthetic data to temporary IDX files first.
+ *
+ * Arguments: [training cycles] [batch size] [chunk size]
+ */
+public class StreamingBenchmark {
+
+    private static final double ETA = 3.0;
+
+    public static void main(String[] args) throws IOException {
+        int trainingCycles = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+
+        String path = new File("").getAbsolutePath() + "/src/main/resources/";
+        String imageFileName = path + "train-images.idx3-ubyte";
+        String labelFileName = path + "train-labels.idx1-ubyte";
+        TrainingSet set;
+        if (new File(imageFileName).exists()) {
+            set = MnistNumberDetector.loadTrainingSet("train-images.idx3-ubyte", "train-labels.idx1-ubyte", Precision.UINT8);
+        } else {
+            System.out.println("No MNIST images found, using synthetic data.");
+            set = SyntheticDigits.createTrainingSet(20000, new Random(1), Precision.UINT8);
+            File imageFile = File.createTempFile("synthetic-images", ".idx3-ubyte");
+            File labelFile = File.createTempFile("synthetic-labels", ".idx1-ubyte");
+            imageFile.deleteOnExit();
+            labelFile.deleteOnExit();
+            writeIdxFiles(set, imageFile, labelFile);
+            imageFileName = imageFile.getPath();
+            labelFileName = labelFile.getPath();
+        }
+
+        System.out.println("source      shuffled  training s   MSE");
+        try (IdxDataSource source = new IdxDataSource(imageFileName, labelFileName, set.getOutputSize(), chunkSize)) {
+            for (boolean shuffled : new boolean[]{false, true}) {
+                TrainingOptions options = new TrainingOptions(ETA).setTrainingCycles(trainingCycles).setBatchSize(batchSize)
+                        .setShuffle(shuffled ? new Random(7) : null).setPrintLog(false);
+                run("in-memory", shuffled, set, options);
+                run("streaming", shuffled, source, options);
+            }
+        }
+    }
+
+    private static void run(String name, boolean shuffled, DataSource source, TrainingOptions options) throws IOException {
+        Network network = new Network(new Random(42), source.getInputSize(), 70, 35, source.getOutputSize());
+        long start = System.nanoTime();
+        network.trainWithDataSet(source, options);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-11s %-8s  %10.3f  %.6f%n", name, shuffled, seconds, network.calcualteMSEAverage(source));
+    }
+
+    private static void writeIdxFiles(TrainingSet set, File imageFile, File labelFile) throws IOException {
+        double[] input = new double[set.getInputSize()];
+        try (DataOutputStream images = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(imageFile)));
+             DataOutputStream labels = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(labelFile)))) {
+            images.writeInt(2051);
+            images.writeInt(set.getDataCount());
+            images.writeInt(28);
+            images.writeInt(set.getInputSize() / 28);
+            labels.writeInt(2049);
+            labels.writeInt(set.getDataCount());
+            for (int i = 0; i < set.getDataCount(); i++) {
+                set.copyInput(i, input, 0);
+                for (double pixel : input) {
+                    images.writeByte((int) (pixel * 256));
+                }
+                labels.writeByte(set.getLabel(i));
+            }
+        }
+    }
+}
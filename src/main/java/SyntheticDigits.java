@@ -0,0 +1,33 @@
+import java.util.Random;
+
+/**
+ * Creates MNIST-sized data sets of ten classes for benchmarks, so they run without the MNIST files.
+ * Every class lights up its own band of pixels of a 28x28 image, every image adds noise to its band,
+ * and like MNIST most of the pixels stay zero.
+ */
+public class SyntheticDigits {
+
+    public static TrainingSet createTrainingSet(int count, Random random) {
+        return createTrainingSet(count, random, Precision.DOUBLE);
+    }
+
+    public static TrainingSet createTrainingSet(int count, Random random, Precision precision) {
+        TrainingSet set = new TrainingSet(28 * 28, 10, precision);
+        for (int i = 0; i < count; i++) {
+            int digit = random.nextInt(10);
+            double[] input = new double[28 * 28];
+            int firstRow = 2 + digit * 2;
+            for (int row = firstRow; row < firstRow + 6; row++) {
+                for (int col = 4; col < 24; col++) {
+                    if (random.nextDouble() < 0.7) {
+                        input[row * 28 + col] = random.nextInt(256) / 256.0;
+                    }
+                }
+            }
+            double[] output = new double[10];
+            output[digit] = 1;
+            set.addData(input, output);
+        }
+        return set;
+    }
+}
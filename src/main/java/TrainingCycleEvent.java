@@ -0,0 +1,56 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for one training cycle, with the same values as {@link TrainingMetrics}.
+ * The duration of the event is the wall time of the cycle. Enable it in a recording with
+ * {@code -XX:StartFlightRecording:settings=profile} or any settings which enable {@code network.TrainingCycle}.
+ */
+@Name("network.TrainingCycle")
+@Label("Training Cycle")
+@Category("Neural Network")
+@Description("One cycle of training a network with the whole set")
+@StackTrace(false)
+class TrainingCycleEvent extends jdk.jfr.Event {
+
+    @Label("Cycle")
+    int cycle;
+
+    @Label("Samples")
+    long samples;
+
+    @Label("Samples per Second")
+    double samplesPerSecond;
+
+    @Label("Loading")
+    @Timespan
+    long loadingNanos;
+
+    @Label("Forward")
+    @Timespan
+    long forwardNanos;
+
+    @Label("Backprop")
+    @Timespan
+    long backpropNanos;
+
+    @Label("Update")
+    @Timespan
+    long updateNanos;
+
+    @Label("Evaluation")
+    @Timespan
+    long evaluationNanos;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("MSE")
+    double mse;
+}
@@ -0,0 +1,14 @@
+/**
+ * Gets notified about the progress of {@link Network#trainWithDataSet(TrainingSet, TrainingOptions)} and
+ * {@link Network#trainWithDataSet(DataSource, TrainingOptions)}, see {@link TrainingOptions#addListener}.
+ * It's called on the training thread, so it should return quickly.
+ */
+public interface TrainingListener {
+
+    /**
+     * Called after every training cycle, before the checkpoint of the cycle is saved.
+     *
+     * @param metrics What the cycle took.
+     */
+    void cycleCompleted(TrainingMetrics metrics);
+}
@@ -0,0 +1,89 @@
+/**
+ * What one training cycle took. The time of the phases is summed up over all threads that trained, so with a pool
+ * it can be larger than the wall time; time which isn't part of any phase (like waiting for other threads) is
+ * not counted.
+ */
+public class TrainingMetrics {
+
+    private final int cycle;
+    private final long samples;
+    private final long wallNanos;
+    private final long[] phaseNanos; //[TrainingPhase.ordinal()]
+    private final long allocatedBytes;
+    private final double mse;
+
+    TrainingMetrics(int cycle, long samples, long wallNanos, long[] phaseNanos, long allocatedBytes, double mse) {
+        this.cycle = cycle;
+        this.samples = samples;
+        this.wallNanos = wallNanos;
+        this.phaseNanos = phaseNanos.clone();
+        this.allocatedBytes = allocatedBytes;
+        this.mse = mse;
+    }
+
+    /**
+     * @return The number of the training cycle, starting with 1.
+     */
+    public int getCycle() {
+        return cycle;
+    }
+
+    /**
+     * @return How many samples were trained with in the cycle.
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return The wall time of the cycle, including the evaluation.
+     */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return The time spent in the given phase, summed up over all threads.
+     */
+    public long getPhaseNanos(TrainingPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return How many bytes the training thread allocated in the cycle, or -1 if the JVM can't measure it.
+     *         Allocations of the threads of a pool or a prefetcher are not included.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return The MSE of the training set after the cycle, or NaN if it wasn't calculated.
+     */
+    public double getMse() {
+        return mse;
+    }
+
+    public double getSamplesPerSecond() {
+        return samples * 1e9 / wallNanos;
+    }
+
+    /**
+     * @return The bytes allocated per second by the training thread, or -1 if the JVM can't measure it.
+     */
+    public double getAllocationRate() {
+        return allocatedBytes < 0 ? -1 : allocatedBytes * 1e9 / wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Cycle %d: %d samples in %.3f s (%.0f samples/s)", cycle, samples, wallNanos / 1e9, getSamplesPerSecond()));
+        for (TrainingPhase phase : TrainingPhase.values()) {
+            builder.append(String.format(", %s %.3f s", phase.name().toLowerCase(), getPhaseNanos(phase) / 1e9));
+        }
+        if (allocatedBytes >= 0) builder.append(String.format(", allocated %.1f MB/s", getAllocationRate() / 1e6));
+        if (!Double.isNaN(mse)) builder.append(", MSE ").append(mse);
+        return builder.toString();
+    }
+}
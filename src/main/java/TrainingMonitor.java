@@ -0,0 +1,95 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the training cycles for the listeners of the options and the JDK Flight Recorder.
+ * If there are no listeners and no recording wants {@link TrainingCycleEvent}s, the workspaces don't measure
+ * their phases and the monitor does nothing. Whether a recording wants them is checked at the start of every
+ * training cycle, so a recording started or stopped during a long training takes effect with the next cycle.
+ */
+class TrainingMonitor {
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final List<TrainingListener> listeners;
+    private final BatchWorkspace[] workspaces;
+    private boolean enabled; // for the current training cycle
+    private final long[] phaseNanos = new long[TrainingPhase.values().length];
+    private TrainingCycleEvent event;
+    private long cycleStart;
+    private long allocationStart;
+
+    TrainingMonitor(TrainingOptions options, BatchWorkspace[] workspaces) {
+        this.listeners = options.getListeners();
+        this.workspaces = workspaces;
+        this.enabled = !listeners.isEmpty() || new TrainingCycleEvent().isEnabled();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void startCycle() {
+        event = new TrainingCycleEvent();
+        enabled = !listeners.isEmpty() || event.isEnabled();
+        for (BatchWorkspace workspace : workspaces) {
+            workspace.profiling = enabled;
+        }
+        if (!enabled) return;
+        for (BatchWorkspace workspace : workspaces) {
+            Arrays.fill(workspace.phaseNanos, 0);
+        }
+        event.begin();
+        allocationStart = allocatedBytes();
+        cycleStart = System.nanoTime();
+    }
+
+    /**
+     * @param cycle The 0 based training cycle.
+     * @param samples How many samples were trained with.
+     * @param mse The MSE after the cycle, or NaN if it wasn't calculated.
+     */
+    void endCycle(int cycle, long samples, double mse) {
+        if (!enabled) return;
+        long wallNanos = System.nanoTime() - cycleStart;
+        long allocated = allocationStart < 0 ? -1 : allocatedBytes() - allocationStart;
+        Arrays.fill(phaseNanos, 0);
+        for (BatchWorkspace workspace : workspaces) {
+            for (int phase = 0; phase < phaseNanos.length; phase++) {
+                phaseNanos[phase] += workspace.phaseNanos[phase];
+            }
+        }
+        TrainingMetrics metrics = new TrainingMetrics(cycle + 1, samples, wallNanos, phaseNanos, allocated, mse);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.cycle = metrics.getCycle();
+            event.samples = samples;
+            event.samplesPerSecond = metrics.getSamplesPerSecond();
+            event.loadingNanos = metrics.getPhaseNanos(TrainingPhase.LOADING);
+            event.forwardNanos = metrics.getPhaseNanos(TrainingPhase.FORWARD);
+            event.backpropNanos = metrics.getPhaseNanos(TrainingPhase.BACKPROP);
+            event.updateNanos = metrics.getPhaseNanos(TrainingPhase.UPDATE);
+            event.evaluationNanos = metrics.getPhaseNanos(TrainingPhase.EVALUATION);
+            event.allocatedBytes = allocated;
+            event.mse = mse;
+            event.commit();
+        }
+        for (TrainingListener listener : listeners) {
+            listener.cycleCompleted(metrics);
+        }
+    }
+
+    /**
+     * @return The bytes allocated by the calling thread so far, or -1 if the JVM can't measure it.
+     */
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemoryEnabled()) return allocations.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
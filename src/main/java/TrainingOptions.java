@@ -0,0 +1,318 @@
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for {@link Network#trainWithDataSet(TrainingSet, TrainingOptions)} and
+ * {@link Network#trainWithDataSet(DataSource, TrainingOptions)}.
+ * All setters return the options themselves, so they can be chained.
+ */
+public class TrainingOptions {
+
+    private final double eta;
+    private int trainingCycles = 1;
+    private int batchSize = 1;
+    private ForkJoinPool pool;
+    private boolean hogwild;
+    private SigmoidMode sigmoidMode = SigmoidMode.EXACT;
+    private boolean printLog = true;
+    private Random shuffle;
+    private int prefetchDepth;
+    private Path checkpointPath;
+    private int checkpointInterval;
+    private int trainedCycles;
+    private final List<TrainingListener> listeners = new ArrayList<>();
+    private DataSource validation;
+    private int validationInterval;
+    private int patience;
+    private double minDelta;
+    private Optimizer optimizer = new SgdOptimizer();
+    private LearningRateSchedule schedule = LearningRateSchedule.constant();
+    private InetSocketAddress parameterServer;
+    private int syncInterval;
+
+    /**
+     * @param eta The learning rate.
+     */
+    public TrainingOptions(double eta) {
+        this.eta = eta;
+    }
+
+    /**
+     * @param trainingCycles How many times the whole set should be trained with.
+     */
+    public TrainingOptions setTrainingCycles(int trainingCycles) {
+        if (trainingCycles < 0) throw new IllegalArgumentException("The number of training cycles can't be negative.");
+        this.trainingCycles = trainingCycles;
+        return this;
+    }
+
+    /**
+     * @param batchSize How many samples are trained with before the weights are updated.
+     */
+    public TrainingOptions setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("The batch size has to be at least 1.");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Trains every batch data-parallel on the given pool. The batch is split into one shard per thread of the pool,
+     * so the results only depend on the parallelism of the pool and not on the scheduling of the threads.
+     *
+     * @param pool The pool to train on, or null to train on the calling thread.
+     */
+    public TrainingOptions setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Trains asynchronously (Hogwild-style) instead of data-parallel: every thread of the pool trains its own part
+     * of the set with its own scratch buffers and updates the shared weights without any locking or waiting for
+     * the other threads. Updates of different threads can overwrite each other, so the results are not reproducible.
+     * Requires a pool and plain SGD as the optimizer.
+     *
+     * @param hogwild Whether the threads of the pool should train asynchronously.
+     */
+    public TrainingOptions setHogwild(boolean hogwild) {
+        this.hogwild = hogwild;
+        return this;
+    }
+
+    /**
+     * @param sigmoidMode How the sigmoid function of the sigmoid layers is calculated during training.
+     *                    The MSE which is printed is always calculated with the exact sigmoid function.
+     */
+    public TrainingOptions setSigmoidMode(SigmoidMode sigmoidMode) {
+        this.sigmoidMode = sigmoidMode;
+        return this;
+    }
+
+    /**
+     * @param printLog Whether the progress and MSE should be calculated and printed.
+     */
+    public TrainingOptions setPrintLog(boolean printLog) {
+        this.printLog = printLog;
+        return this;
+    }
+
+    /**
+     * Every training cycle gets its own random order, so the order in which the samples are stored doesn't bias
+     * the training. Not supported by Hogwild training.
+     *
+     * @param shuffle Shuffles the samples of every training cycle, or null to train with them in their stored order.
+     */
+    public TrainingOptions setShuffle(Random shuffle) {
+        this.shuffle = shuffle;
+        return this;
+    }
+
+    /**
+     * Reads and prepares the next batches on a background thread while training, see {@link PrefetchingDataSource}.
+     * Not supported by Hogwild training.
+     *
+     * @param prefetchDepth How many batches are prepared in advance at most, or 0 to read them on the training thread.
+     */
+    public TrainingOptions setPrefetchDepth(int prefetchDepth) {
+        if (prefetchDepth < 0) throw new IllegalArgumentException("The prefetch depth can't be negative.");
+        this.prefetchDepth = prefetchDepth;
+        return this;
+    }
+
+    /**
+     * Saves the NN with {@link NetworkCheckpoint#save} after every given number of training cycles, marked as
+     * unfinished, and once more when the training ends, marked as finished. So a run which is stopped can be
+     * continued from the last checkpoint with {@link #setTrainedCycles}, and an unfinished one is never mistaken
+     * for a trained NN, see {@link NetworkCheckpoint#isFinished()}.
+     *
+     * @param checkpointPath Where to save the NN, or null to not save it.
+     * @param checkpointInterval After how many training cycles the NN is saved.
+     */
+    public TrainingOptions setCheckpoint(Path checkpointPath, int checkpointInterval) {
+        if (checkpointInterval < 1) throw new IllegalArgumentException("The checkpoint interval has to be at least 1.");
+        this.checkpointPath = checkpointPath;
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * Continues a training which was stopped after the given number of its training cycles, for example from an
+     * unfinished checkpoint: only the remaining cycles are trained and the learning rate schedule continues where
+     * it stopped. The optimizer and early stopping start over.
+     *
+     * @param trainedCycles How many of the training cycles are already done.
+     */
+    public TrainingOptions setTrainedCycles(int trainedCycles) {
+        if (trainedCycles < 0) throw new IllegalArgumentException("The number of trained cycles can't be negative.");
+        this.trainedCycles = trainedCycles;
+        return this;
+    }
+
+    /**
+     * Measures every training cycle and passes the {@link TrainingMetrics} to the given listener.
+     * Without listeners the phases are only measured while a JDK Flight Recorder recording takes
+     * {@link TrainingCycleEvent}s.
+     *
+     * @param listener Gets notified after every training cycle.
+     */
+    public TrainingOptions addListener(TrainingListener listener) {
+        if (listener == null) throw new IllegalArgumentException("The listener can't be null.");
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Evaluates the NN on held-out samples while training and logs their MSE and accuracy. A small validation set
+     * keeps the evaluations cheap, see {@link TrainingSet#split}.
+     *
+     * @param validation The samples to evaluate on, or null to not validate.
+     * @param validationInterval After how many batches the NN is evaluated, or 0 to evaluate after every
+     *                           training cycle. Hogwild training is only evaluated after every training cycle.
+     */
+    public TrainingOptions setValidation(DataSource validation, int validationInterval) {
+        if (validationInterval < 0) throw new IllegalArgumentException("The validation interval can't be negative.");
+        this.validation = validation;
+        this.validationInterval = validationInterval;
+        return this;
+    }
+
+    /**
+     * Stops training before the last training cycle once the MSE of the validation samples stopped improving, and
+     * restores the weights and biases of the evaluation with the lowest MSE. Requires validation samples.
+     *
+     * @param patience After how many evaluations without improvement the training stops, or 0 to never stop early.
+     * @param minDelta By how much the MSE has to fall below the best one to count as an improvement.
+     */
+    public TrainingOptions setEarlyStopping(int patience, double minDelta) {
+        if (patience < 0) throw new IllegalArgumentException("The patience can't be negative.");
+        if (minDelta < 0) throw new IllegalArgumentException("The minimal improvement can't be negative.");
+        this.patience = patience;
+        this.minDelta = minDelta;
+        return this;
+    }
+
+    /**
+     * @param optimizer How the weights and biases are moved against their gradients, plain SGD by default.
+     *                  The Network keeps the state of the optimizer between trainings, so training again with the same
+     *                  optimizer instance continues with its momentum; a new instance starts without.
+     */
+    public TrainingOptions setOptimizer(Optimizer optimizer) {
+        if (optimizer == null) throw new IllegalArgumentException("The optimizer can't be null.");
+        this.optimizer = optimizer;
+        return this;
+    }
+
+    /**
+     * @param schedule How the learning rate changes while training, constant by default.
+     */
+    public TrainingOptions setSchedule(LearningRateSchedule schedule) {
+        if (schedule == null) throw new IllegalArgumentException("The schedule can't be null.");
+        this.schedule = schedule;
+        return this;
+    }
+
+    /**
+     * Trains as one of the workers of a {@link ParameterServer}, usually in its own process and on its own shard of
+     * the samples: the NN starts from the weights and biases of the server, exchanges its updates with the server
+     * after every given number of batches and ends up with the final weights and biases of the server.
+     * Not supported by Hogwild training or early stopping, whose restored weights would replace those of the server.
+     *
+     * @param parameterServer The address of the server, or null to train on its own.
+     * @param syncInterval After how many batches the updates are exchanged with the server.
+     */
+    public TrainingOptions setParameterServer(InetSocketAddress parameterServer, int syncInterval) {
+        if (syncInterval < 1) throw new IllegalArgumentException("The sync interval has to be at least 1.");
+        this.parameterServer = parameterServer;
+        this.syncInterval = syncInterval;
+        return this;
+    }
+
+    public double getEta() {
+        return eta;
+    }
+
+    public int getTrainingCycles() {
+        return trainingCycles;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public boolean isHogwild() {
+        return hogwild;
+    }
+
+    public SigmoidMode getSigmoidMode() {
+        return sigmoidMode;
+    }
+
+    public boolean isPrintLog() {
+        return printLog;
+    }
+
+    public Random getShuffle() {
+        return shuffle;
+    }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public int getTrainedCycles() {
+        return trainedCycles;
+    }
+
+    public List<TrainingListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    public DataSource getValidation() {
+        return validation;
+    }
+
+    public int getValidationInterval() {
+        return validationInterval;
+    }
+
+    public int getPatience() {
+        return patience;
+    }
+
+    public double getMinDelta() {
+        return minDelta;
+    }
+
+    public Optimizer getOptimizer() {
+        return optimizer;
+    }
+
+    public LearningRateSchedule getSchedule() {
+        return schedule;
+    }
+
+    public InetSocketAddress getParameterServer() {
+        return parameterServer;
+    }
+
+    public int getSyncInterval() {
+        return syncInterval;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * The phases whose time is measured while training, see {@link TrainingMetrics}.
+ */
+public enum TrainingPhase {
+
+    /**
+     * Reading samples from the set or source and copying them into the scratch buffers.
+     */
+    LOADING,
+
+    /**
+     * Calculating the outputs of all layers.
+     */
+    FORWARD,
+
+    /**
+     * Calculating the error signals and, for mini-batches, the gradients. Training with single samples updates the
+     * weights in the same pass, so its updates are counted here as well.
+     */
+    BACKPROP,
+
+    /**
+     * Moving the weights and biases of mini-batches, including summing up the gradients of parallel shards.
+     */
+    UPDATE,
+
+    /**
+     * Calculating the MSE after a training cycle.
+     */
+    EVALUATION
+}
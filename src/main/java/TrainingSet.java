@@ -1,16 +1,40 @@
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
 
-public class TrainingSet {
+public class TrainingSet implements DataSource {
     
     private final int inputSize;
     private final int outputSize;
+    private final Precision precision;
+    private final Storage storage; // Holds the samples in the precision of the set
     
-    private final ArrayList<TrainingData> trainingData = new ArrayList<>();
+    private static final double BYTE_SCALE = 1d / 256;
     
     public TrainingSet(int inputSize, int outputSize) {
+        this(inputSize, outputSize, Precision.DOUBLE);
+    }
+    
+    /**
+     * Creates an empty TrainingSet which stores its samples in the given precision.
+     * With Precision.FLOAT all samples are packed into two float arrays, which halves the memory of the set,
+     * but getInput, getOutput and getData have to convert the sample into new double arrays on every call.
+     * With Precision.UINT8 the inputs are packed into one byte array, each byte standing for byte / 256, and
+     * every sample keeps only the index of its expected 1. The one-hot outputs are only built when copied;
+     * such a set can hold at most 256 outputs.
+     */
+    public TrainingSet(int inputSize, int outputSize, Precision precision) {
         this.inputSize = inputSize;
         this.outputSize = outputSize;
+        this.precision = precision;
+        if (precision == Precision.DOUBLE) {
+            this.storage = new DoubleStorage();
+        } else if (precision == Precision.FLOAT) {
+            this.storage = new FloatStorage();
+        } else {
+            if (outputSize > 256) throw new IllegalArgumentException("A UINT8 TrainingSet can hold at most 256 outputs.");
+            this.storage = new ByteStorage();
+        }
     }
     
     public void addData(double[] input, double[] expectedOutput) {
@@ -20,11 +44,132 @@ public class TrainingSet {
     
     public void addData(TrainingData newSet) {
         if (newSet.getInput().length != inputSize || newSet.getExpectedOutput().length != outputSize) throw new IllegalArgumentException("New Data Set has the wrong size.");
-        trainingData.add(newSet);
+        storage.add(newSet);
+    }
+    
+    /**
+     * Adds a sample given as raw bytes, which a UINT8 set stores without converting it.
+     *
+     * @param input The raw inputs, each byte standing for byte / 256.
+     * @param label The index of the 1 in the expected output.
+     */
+    public void addData(byte[] input, int label) {
+        if (input.length != inputSize || label < 0 || label >= outputSize) throw new IllegalArgumentException("New Data Set has the wrong size.");
+        addData(input, 0, new byte[]{(byte) label}, 0, 1);
+    }
+    
+    /**
+     * Adds many samples at once, like the images and labels of a MNIST file. A UINT8 set stores them as they are,
+     * sets of other precisions convert them.
+     *
+     * @param inputs The raw inputs of all samples one after another, each byte standing for byte / 256.
+     * @param inputOffset The index of the first input in inputs.
+     * @param labels The index of the 1 in the expected output of every sample.
+     * @param labelOffset The index of the first label in labels.
+     * @param count The number of samples.
+     */
+    public void addData(byte[] inputs, int inputOffset, byte[] labels, int labelOffset, int count) {
+        for (int i = labelOffset; i < labelOffset + count; i++) {
+            if ((labels[i] & 0xFF) >= outputSize) throw new IllegalArgumentException("Label " + (labels[i] & 0xFF) + " is not in the range 0 to " + (outputSize - 1));
+        }
+        storage.add(inputs, inputOffset, labels, labelOffset, count);
+    }
+    
+    /**
+     * Creates a new set in the same precision with copies of the samples at the given indices, in their order.
+     * The inputs and outputs of a DOUBLE set are shared, not copied.
+     */
+    public TrainingSet subset(int[] indices) {
+        TrainingSet subset = new TrainingSet(inputSize, outputSize, precision);
+        for (int index : indices) {
+            checkIndex(index);
+            storage.addTo(subset, index);
+        }
+        return subset;
+    }
+    
+    /**
+     * Splits the samples randomly into two new sets, like a training and a held-out validation set.
+     * Taking only the second set gives a cheap random subsample.
+     *
+     * @param secondCount How many samples the second set gets, the first set gets all others.
+     * @param random Decides which samples go into which set.
+     * @return The two sets.
+     */
+    public TrainingSet[] split(int secondCount, Random random) {
+        if (secondCount < 0 || secondCount > getDataCount()) throw new IllegalArgumentException("The second set can't have " + secondCount + " of " + getDataCount() + " samples.");
+        int[] order = new int[getDataCount()];
+        for (int i = 0; i < order.length; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        int firstCount = order.length - secondCount;
+        int[] first = Arrays.copyOf(order, firstCount);
+        int[] second = Arrays.copyOfRange(order, firstCount, order.length);
+        // Keep the stored order within each set, so the split doesn't shuffle the samples as well.
+        Arrays.sort(first);
+        Arrays.sort(second);
+        return new TrainingSet[]{subset(first), subset(second)};
     }
     
     public TrainingData getData(int index) {
-        return trainingData.get(index);
+        checkIndex(index);
+        return storage.get(index);
+    }
+    
+    /**
+     * Copies the input of the sample at the given index into dest, starting at the given offset.
+     */
+    public void copyInput(int index, double[] dest, int offset) {
+        checkIndex(index);
+        storage.copyInput(index, dest, offset);
+    }
+    
+    /**
+     * Copies the expected output of the sample at the given index into dest, starting at the given offset.
+     */
+    public void copyOutput(int index, double[] dest, int offset) {
+        checkIndex(index);
+        storage.copyOutput(index, dest, offset);
+    }
+    
+    /**
+     * Copies the input of the sample at the given index into dest, starting at the given offset.
+     */
+    public void copyInput(int index, float[] dest, int offset) {
+        checkIndex(index);
+        storage.copyInput(index, dest, offset);
+    }
+    
+    /**
+     * Copies the expected output of the sample at the given index into dest, starting at the given offset.
+     */
+    public void copyOutput(int index, float[] dest, int offset) {
+        checkIndex(index);
+        storage.copyOutput(index, dest, offset);
+    }
+    
+    /**
+     * Copies the raw input bytes of the sample at the given index of a UINT8 set into dest, starting at the given offset.
+     *
+     * @throws IllegalStateException If this is not a UINT8 set, only those store raw bytes.
+     */
+    public void copyInput(int index, byte[] dest, int offset) {
+        checkIndex(index);
+        storage.copyInput(index, dest, offset);
+    }
+    
+    /**
+     * @return The index of the highest expected output of the sample at the given index, its class.
+     */
+    public int getLabel(int index) {
+        checkIndex(index);
+        return storage.getLabel(index);
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= getDataCount()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + getDataCount());
     }
     
     @Override
@@ -32,7 +177,7 @@ public class TrainingSet {
         String s = " Training Set [ " + inputSize + " : " + outputSize + " ]\n";
         s +=       "----------------------\n";
         for (int i = 0; i < getDataCount(); i++) {
-            s += i + ": " + Arrays.toString(trainingData.get(i).getInput()) + " ->||-> " + Arrays.toString(trainingData.get(i).getExpectedOutput()) + "\n";
+            s += i + ": " + Arrays.toString(getInput(i)) + " ->||-> " + Arrays.toString(getOutput(i)) + "\n";
         }
         s +=       "----------------------\n";
         return s;
@@ -42,32 +187,344 @@ public class TrainingSet {
         System.out.println(" Training Set [ " + inputSize + " : " + outputSize + " ]\n");
         System.out.println("----------------------\n");
         for (int i = 0; i < getDataCount(); i++) {
-            System.out.println(i + ": " + Arrays.toString(trainingData.get(i).getInput()) + " ->||-> " + Arrays.toString(trainingData.get(i).getExpectedOutput()) + "\n");
+            System.out.println(i + ": " + Arrays.toString(getInput(i)) + " ->||-> " + Arrays.toString(getOutput(i)) + "\n");
         }
         System.out.println("----------------------\n");
     }
     
+    /**
+     * Starts a pass over all samples of this set. A shuffled cursor visits the samples in a new random permutation.
+     */
+    @Override
+    public DataCursor openCursor(Random random) {
+        int[] order = new int[getDataCount()];
+        for (int i = 0; i < order.length; i++) {
+            int j = random == null ? i : random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return new DataCursor() {
+            private int position;
+            
+            @Override
+            public int next(double[] inputs, double[] targets, int max) {
+                int count = Math.min(max, order.length - position);
+                for (int sample = 0; sample < count; sample++) {
+                    copyInput(order[position], inputs, sample * inputSize);
+                    copyOutput(order[position], targets, sample * outputSize);
+                    position++;
+                }
+                return count;
+            }
+        };
+    }
+    
+    @Override
     public int getDataCount() {
-        return trainingData.size();
+        return storage.size();
     }
     
     public double[] getInput(int index) {
-        return trainingData.get(index).getInput();
+        checkIndex(index);
+        return storage.getInput(index);
     }
     
     public double[] getOutput(int index) {
-        return trainingData.get(index).getExpectedOutput();
+        checkIndex(index);
+        return storage.getOutput(index);
     }
     
+    @Override
     public int getInputSize() {
         return inputSize;
     }
     
+    @Override
     public int getOutputSize() {
         return outputSize;
     }
     
+    public Precision getPrecision() {
+        return precision;
+    }
+    
     public ArrayList<TrainingData> getTrainingData() {
-        return (ArrayList<TrainingData>) trainingData.clone();
+        ArrayList<TrainingData> list = new ArrayList<>(getDataCount());
+        for (int i = 0; i < getDataCount(); i++) {
+            list.add(storage.get(i));
+        }
+        return list;
+    }
+    
+    /**
+     * Stores the samples in one {@link Precision}. The indices are checked by the set already.
+     * Everything which isn't stored as such is converted from what is.
+     */
+    private abstract class Storage {
+        
+        abstract int size();
+        
+        abstract void add(TrainingData sample);
+        
+        /**
+         * Converts the raw samples, see {@link TrainingSet#addData(byte[], int, byte[], int, int)}.
+         */
+        void add(byte[] inputs, int inputOffset, byte[] labels, int labelOffset, int count) {
+            for (int sample = 0; sample < count; sample++) {
+                double[] input = new double[inputSize];
+                for (int i = 0; i < inputSize; i++) {
+                    input[i] = (inputs[inputOffset + sample * inputSize + i] & 0xFF) * BYTE_SCALE;
+                }
+                double[] expectedOutput = new double[outputSize];
+                expectedOutput[labels[labelOffset + sample] & 0xFF] = 1;
+                add(new TrainingData(input, expectedOutput));
+            }
+        }
+        
+        /**
+         * Adds a copy of the sample at the given index to the given set of the same precision.
+         */
+        void addTo(TrainingSet set, int index) {
+            set.storage.add(get(index));
+        }
+        
+        TrainingData get(int index) {
+            return new TrainingData(getInput(index), getOutput(index));
+        }
+        
+        double[] getInput(int index) {
+            double[] input = new double[inputSize];
+            copyInput(index, input, 0);
+            return input;
+        }
+        
+        double[] getOutput(int index) {
+            double[] output = new double[outputSize];
+            copyOutput(index, output, 0);
+            return output;
+        }
+        
+        abstract void copyInput(int index, double[] dest, int offset);
+        
+        abstract void copyOutput(int index, double[] dest, int offset);
+        
+        abstract void copyInput(int index, float[] dest, int offset);
+        
+        abstract void copyOutput(int index, float[] dest, int offset);
+        
+        void copyInput(int index, byte[] dest, int offset) {
+            throw new IllegalStateException("Only a UINT8 TrainingSet stores raw bytes, this one stores " + precision + ".");
+        }
+        
+        int getLabel(int index) {
+            return ArrayHelperMethods.indexOfHighestValue(getOutput(index));
+        }
+    }
+    
+    /**
+     * Precision.DOUBLE: the samples as they were added.
+     */
+    private class DoubleStorage extends Storage {
+        private final ArrayList<TrainingData> trainingData = new ArrayList<>();
+        
+        @Override
+        int size() {
+            return trainingData.size();
+        }
+        
+        @Override
+        void add(TrainingData sample) {
+            trainingData.add(sample);
+        }
+        
+        @Override
+        TrainingData get(int index) {
+            return trainingData.get(index);
+        }
+        
+        @Override
+        double[] getInput(int index) {
+            return trainingData.get(index).getInput();
+        }
+        
+        @Override
+        double[] getOutput(int index) {
+            return trainingData.get(index).getExpectedOutput();
+        }
+        
+        @Override
+        void copyInput(int index, double[] dest, int offset) {
+            System.arraycopy(trainingData.get(index).getInput(), 0, dest, offset, inputSize);
+        }
+        
+        @Override
+        void copyOutput(int index, double[] dest, int offset) {
+            System.arraycopy(trainingData.get(index).getExpectedOutput(), 0, dest, offset, outputSize);
+        }
+        
+        @Override
+        void copyInput(int index, float[] dest, int offset) {
+            double[] input = trainingData.get(index).getInput();
+            for (int i = 0; i < inputSize; i++) {
+                dest[offset + i] = (float) input[i];
+            }
+        }
+        
+        @Override
+        void copyOutput(int index, float[] dest, int offset) {
+            double[] output = trainingData.get(index).getExpectedOutput();
+            for (int i = 0; i < outputSize; i++) {
+                dest[offset + i] = (float) output[i];
+            }
+        }
+    }
+    
+    /**
+     * Precision.FLOAT: all samples one after another, [index * inputSize + pixel].
+     */
+    private class FloatStorage extends Storage {
+        private float[] inputs = new float[16 * inputSize];
+        private float[] outputs = new float[16 * outputSize];
+        private int count;
+        
+        @Override
+        int size() {
+            return count;
+        }
+        
+        @Override
+        void add(TrainingData sample) {
+            if (count * inputSize == inputs.length) {
+                inputs = Arrays.copyOf(inputs, inputs.length * 2);
+                outputs = Arrays.copyOf(outputs, outputs.length * 2);
+            }
+            for (int i = 0; i < inputSize; i++) {
+                inputs[count * inputSize + i] = (float) sample.getInput()[i];
+            }
+            for (int i = 0; i < outputSize; i++) {
+                outputs[count * outputSize + i] = (float) sample.getExpectedOutput()[i];
+            }
+            count++;
+        }
+        
+        @Override
+        void copyInput(int index, double[] dest, int offset) {
+            for (int i = 0; i < inputSize; i++) {
+                dest[offset + i] = inputs[index * inputSize + i];
+            }
+        }
+        
+        @Override
+        void copyOutput(int index, double[] dest, int offset) {
+            for (int i = 0; i < outputSize; i++) {
+                dest[offset + i] = outputs[index * outputSize + i];
+            }
+        }
+        
+        @Override
+        void copyInput(int index, float[] dest, int offset) {
+            System.arraycopy(inputs, index * inputSize, dest, offset, inputSize);
+        }
+        
+        @Override
+        void copyOutput(int index, float[] dest, int offset) {
+            System.arraycopy(outputs, index * outputSize, dest, offset, outputSize);
+        }
+    }
+    
+    /**
+     * Precision.UINT8: the raw pixels of all samples one after another and the index of each expected 1.
+     */
+    private class ByteStorage extends Storage {
+        private byte[] inputs = new byte[16 * inputSize];
+        private byte[] labels = new byte[16];
+        private int count;
+        
+        @Override
+        int size() {
+            return count;
+        }
+        
+        /**
+         * Fails if the sample can't be stored exactly, that is if an input isn't a multiple of 1/256 in [0, 1) or
+         * the expected output isn't all zeros but a single 1.
+         */
+        @Override
+        void add(TrainingData sample) {
+            double[] input = sample.getInput();
+            double[] expectedOutput = sample.getExpectedOutput();
+            byte[] pixels = new byte[inputSize];
+            for (int i = 0; i < inputSize; i++) {
+                double value = input[i] * 256;
+                if (value != (int) value || value < 0 || value > 255) throw new IllegalArgumentException("Input " + input[i] + " can't be stored as an unsigned byte.");
+                pixels[i] = (byte) value;
+            }
+            int label = -1;
+            for (int i = 0; i < outputSize; i++) {
+                if (expectedOutput[i] == 1 && label < 0) {
+                    label = i;
+                } else if (expectedOutput[i] != 0) {
+                    throw new IllegalArgumentException("The expected output has to be all zeros but a single 1 to be stored as a label.");
+                }
+            }
+            if (label < 0) throw new IllegalArgumentException("The expected output has to be all zeros but a single 1 to be stored as a label.");
+            add(pixels, 0, new byte[]{(byte) label}, 0, 1);
+        }
+        
+        @Override
+        void add(byte[] newInputs, int inputOffset, byte[] newLabels, int labelOffset, int newCount) {
+            int capacity = labels.length;
+            while (capacity < count + newCount) {
+                capacity *= 2;
+            }
+            if (capacity != labels.length) {
+                inputs = Arrays.copyOf(inputs, capacity * inputSize);
+                labels = Arrays.copyOf(labels, capacity);
+            }
+            System.arraycopy(newInputs, inputOffset, inputs, count * inputSize, newCount * inputSize);
+            System.arraycopy(newLabels, labelOffset, labels, count, newCount);
+            count += newCount;
+        }
+        
+        @Override
+        void addTo(TrainingSet set, int index) {
+            set.storage.add(inputs, index * inputSize, labels, index, 1);
+        }
+        
+        @Override
+        void copyInput(int index, double[] dest, int offset) {
+            for (int i = 0; i < inputSize; i++) {
+                dest[offset + i] = (inputs[index * inputSize + i] & 0xFF) * BYTE_SCALE;
+            }
+        }
+        
+        @Override
+        void copyOutput(int index, double[] dest, int offset) {
+            Arrays.fill(dest, offset, offset + outputSize, 0);
+            dest[offset + (labels[index] & 0xFF)] = 1;
+        }
+        
+        @Override
+        void copyInput(int index, float[] dest, int offset) {
+            for (int i = 0; i < inputSize; i++) {
+                dest[offset + i] = (inputs[index * inputSize + i] & 0xFF) * (float) BYTE_SCALE;
+            }
+        }
+        
+        @Override
+        void copyOutput(int index, float[] dest, int offset) {
+            Arrays.fill(dest, offset, offset + outputSize, 0);
+            dest[offset + (labels[index] & 0xFF)] = 1;
+        }
+        
+        @Override
+        void copyInput(int index, byte[] dest, int offset) {
+            System.arraycopy(inputs, index * inputSize, dest, offset, inputSize);
+        }
+        
+        @Override
+        int getLabel(int index) {
+            return labels[index] & 0xFF;
+        }
     }
 }
@@ -0,0 +1,105 @@
+import java.io.IOException;
+
+/**
+ * Evaluates a {@link Network} on the validation samples of the options while it trains, remembers the weights and
+ * biases with the lowest validation MSE and decides when to stop early, see
+ * {@link TrainingOptions#setValidation} and {@link TrainingOptions#setEarlyStopping}.
+ * Without validation samples it does nothing.
+ */
+class ValidationController {
+
+    private final Network network;
+    private final DataSource validation;
+    private final int interval; // in batches, 0 for after every training cycle
+    private final int patience;
+    private final double minDelta;
+    private final boolean printLog;
+    private final Evaluator evaluator;
+    private final BatchWorkspace timing; // Measures the time of the evaluations
+
+    private final double[] bestWeights; // null without early stopping
+    private final double[] bestBias;
+    private double bestMse = Double.POSITIVE_INFINITY;
+    private String best; // when the best evaluation happened, for the log
+    private int evaluationsWithoutImprovement;
+    private long batches;
+    private int cycles;
+    private boolean stopped;
+
+    ValidationController(Network network, TrainingOptions options, Evaluator evaluator, BatchWorkspace timing) {
+        this.network = network;
+        this.validation = options.getValidation();
+        this.interval = options.isHogwild() ? 0 : options.getValidationInterval();
+        this.patience = options.getPatience();
+        this.minDelta = options.getMinDelta();
+        this.printLog = options.isPrintLog();
+        this.evaluator = evaluator;
+        this.timing = timing;
+        if (patience > 0 && validation == null) throw new IllegalArgumentException("Early stopping needs validation samples.");
+        int[] layerSizes = network.getLayerSizes();
+        if (validation != null && (validation.getInputSize() != layerSizes[0] || validation.getOutputSize() != layerSizes[layerSizes.length - 1])) throw new IllegalArgumentException("The sizes of the validation samples weren't matching the size of the Network.");
+        this.bestWeights = patience > 0 ? new double[network.getWeights().length] : null;
+        this.bestBias = patience > 0 ? new double[network.getBias().length] : null;
+    }
+
+    /**
+     * Counts a trained batch and evaluates if it's time to.
+     *
+     * @return Whether the training should stop.
+     */
+    boolean batchCompleted() throws IOException {
+        if (validation == null) return false;
+        batches++;
+        return interval > 0 && batches % interval == 0 && validate();
+    }
+
+    /**
+     * Evaluates after the training cycle if the NN isn't evaluated every few batches.
+     *
+     * @return Whether the training should stop.
+     */
+    boolean cycleCompleted() throws IOException {
+        if (validation == null || stopped) return stopped;
+        cycles++;
+        return interval == 0 && validate();
+    }
+
+    /**
+     * With early stopping, restores the weights and biases of the best evaluation if it wasn't the last one.
+     *
+     * @return Whether the NN was changed.
+     */
+    boolean finish() {
+        if (bestWeights == null || evaluationsWithoutImprovement == 0) return false;
+        System.arraycopy(bestWeights, 0, network.getWeights(), 0, bestWeights.length);
+        System.arraycopy(bestBias, 0, network.getBias(), 0, bestBias.length);
+        if (printLog) AsyncLog.println("Restored the weights with the best validation MSE " + bestMse + " " + best + ".");
+        return true;
+    }
+
+    private boolean validate() throws IOException {
+        long start = timing.startPhase();
+        InferenceModel model = network.toInferenceModel();
+        Evaluation evaluation = validation instanceof TrainingSet ? evaluator.evaluate(model, (TrainingSet) validation) : evaluator.evaluate(model, validation);
+        timing.endPhase(TrainingPhase.EVALUATION, start);
+        String position = interval > 0 ? "after " + batches + " batches" : "after training cycle " + cycles;
+        if (printLog) AsyncLog.println("Validation " + position + ": MSE " + evaluation.getMse() + ", accuracy " + evaluation.getAccuracyPercentage() + "%");
+
+        if (evaluation.getMse() < bestMse - minDelta) {
+            bestMse = evaluation.getMse();
+            best = position;
+            evaluationsWithoutImprovement = 0;
+            if (bestWeights != null) {
+                System.arraycopy(network.getWeights(), 0, bestWeights, 0, bestWeights.length);
+                System.arraycopy(network.getBias(), 0, bestBias, 0, bestBias.length);
+            }
+        } else {
+            evaluationsWithoutImprovement++;
+        }
+        if (patience > 0 && evaluationsWithoutImprovement >= patience) {
+            stopped = true;
+            if (printLog) AsyncLog.println("Stopping early, the validation MSE didn't improve in " + patience + " evaluations.");
+        }
+        return stopped;
+    }
+}
@@ -2,36 +2,50 @@ package mnist;
 
 
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * MNIST database file containing entries that can represent image or label
- * data. Extends the standard random access file with methods for navigating
- * over the entries. The file format is basically idx with specific header
- * information. This includes a magic number for determining the type of stored
- * entries, count of entries.
+ * data. The file is opened read-only and memory mapped as a whole, so entries
+ * can be read in bulk or viewed without copying, next to the sequential methods
+ * for navigating over the entries. The file format is basically idx with specific
+ * header information. This includes a magic number for determining the type of
+ * stored entries, count of entries.
  */
-public abstract class MnistDbFile extends RandomAccessFile {
+public abstract class MnistDbFile implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer; // big-endian, like the idx format
     private int count;
+    private int position; // the file pointer of the sequential methods
     
 
     /**
-     * Creates new instance and reads the header information.
+     * Opens the file read-only, maps it into memory and reads the header information.
      * 
      * @param name the system-dependent filename
-     * @param mode the access mode
      * @throws IOException
      * @throws FileNotFoundException
-     * @see RandomAccessFile
      */
-    public MnistDbFile(String name, String mode) throws IOException {
-        super(name, mode);
-        if (getMagicNumber() != readInt()) {
-            throw new RuntimeException("This MNIST DB file " + name + " should start with the number " + getMagicNumber() + ".");
+    public MnistDbFile(String name) throws IOException {
+        channel = FileChannel.open(Paths.get(name), StandardOpenOption.READ);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (getMagicNumber() != readInt()) {
+                throw new RuntimeException("This MNIST DB file " + name + " should start with the number " + getMagicNumber() + ".");
+            }
+            count = readInt();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
         }
-        count = readInt();
     }
 
     /**
@@ -57,14 +71,10 @@ public abstract class MnistDbFile extends RandomAccessFile {
      * @param curr the entry index
      */
     public void setCurrentIndex(long curr) {
-        try {
-            if (curr < 0 || curr > count) {
-                throw new RuntimeException(curr + " is not in the range 0 to " + count);
-            }
-            seek(getHeaderSize() + (curr - 1) * getEntryLength());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (curr < 0 || curr > count) {
+            throw new RuntimeException(curr + " is not in the range 0 to " + count);
         }
+        seek(getHeaderSize() + (curr - 1) * getEntryLength());
     }
 
     public int getHeaderSize() {
@@ -106,4 +116,111 @@ public abstract class MnistDbFile extends RandomAccessFile {
     public int getCount() {
         return count;
     }
+
+    /**
+     * Copies the given number of entries, starting with the entry at index from (0 based), into dest.
+     * Doesn't move the file pointer.
+     *
+     * @param from the index of the first entry
+     * @param count the number of entries
+     * @param dest the array to copy into, needs count * getEntryLength() bytes from offset on
+     * @param offset the first index in dest to copy to
+     */
+    public void readEntries(int from, int count, byte[] dest, int offset) {
+        buffer.get(entryPosition(from, count), dest, offset, count * getEntryLength());
+    }
+
+    /**
+     * Copies the given number of entries, starting with the entry at index from (0 based), into dest
+     * and advances the position of dest. Doesn't move the file pointer.
+     */
+    public void readEntries(int from, int count, ByteBuffer dest) {
+        dest.put(entries(from, count));
+    }
+
+    /**
+     * A read-only view of the given number of entries, starting with the entry at index from (0 based).
+     * Nothing is copied, the view reads directly from the mapped file.
+     */
+    public ByteBuffer entries(int from, int count) {
+        return buffer.slice(entryPosition(from, count), count * getEntryLength()).asReadOnlyBuffer();
+    }
+
+    private int entryPosition(int from, int count) {
+        if (from < 0 || count < 0 || from + count > this.count) {
+            throw new IndexOutOfBoundsException("Entries " + from + " to " + (from + count) + " are not in the range 0 to " + this.count);
+        }
+        return getHeaderSize() + from * getEntryLength();
+    }
+
+    /**
+     * Reads the unsigned byte at the file pointer and moves the file pointer forward.
+     *
+     * @return the byte, or -1 at the end of the file
+     */
+    public int read() {
+        if (position >= buffer.limit()) return -1;
+        return buffer.get(position++) & 0xFF;
+    }
+
+    /**
+     * Reads the unsigned byte at the file pointer and moves the file pointer forward.
+     *
+     * @throws IOException at the end of the file
+     */
+    public int readUnsignedByte() throws IOException {
+        int value = read();
+        if (value < 0) throw new IOException("Reached the end of the file.");
+        return value;
+    }
+
+    /**
+     * Reads the big-endian integer at the file pointer and moves the file pointer forward.
+     *
+     * @throws IOException at the end of the file
+     */
+    public int readInt() throws IOException {
+        try {
+            int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Reached the end of the file.", e);
+        }
+    }
+
+    /**
+     * Reads bytes at the file pointer into dest and moves the file pointer forward.
+     *
+     * @throws IOException if the file has less bytes left than requested
+     */
+    public void readFully(byte[] dest, int offset, int length) throws IOException {
+        if (length > buffer.limit() - position) throw new IOException("Reached the end of the file.");
+        buffer.get(position, dest, offset, length);
+        position += length;
+    }
+
+    public int skipBytes(int n) {
+        int skipped = Math.max(0, Math.min(n, buffer.limit() - position));
+        position += skipped;
+        return skipped;
+    }
+
+    public long getFilePointer() {
+        return position;
+    }
+
+    public void seek(long pos) {
+        if (pos < 0 || pos > buffer.limit()) throw new IllegalArgumentException(pos + " is not in the range 0 to " + buffer.limit());
+        position = (int) pos;
+    }
+
+    public long length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package mnist;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * 
@@ -19,13 +20,11 @@ public class MnistImageFile extends MnistDbFile {
      * 
      * @param name
      *            the system-dependent filename
-     * @param mode
-     *            the access mode
      * @throws IOException
      * @throws FileNotFoundException
      */
-    public MnistImageFile(String name, String mode) throws FileNotFoundException, IOException {
-        super(name, mode);
+    public MnistImageFile(String name) throws FileNotFoundException, IOException {
+        super(name);
 
         // read header information
         rows = readInt();
@@ -39,15 +38,49 @@ public class MnistImageFile extends MnistDbFile {
      * @throws IOException
      */
     public int[][] readImage() throws IOException {
+        byte[] pixels = new byte[getEntryLength()];
+        readFully(pixels, 0, pixels.length);
         int[][] dat = new int[getRows()][getCols()];
         for (int i = 0; i < getCols(); i++) {
             for (int j = 0; j < getRows(); j++) {
-                dat[i][j] = readUnsignedByte();
+                dat[i][j] = pixels[i * getRows() + j] & 0xFF;
             }
         }
         return dat;
     }
 
+    /**
+     * Copies the pixels of the given number of images, starting with the image at index from (0 based),
+     * into dest. Every image takes getEntryLength() bytes, the pixels are unsigned.
+     * Doesn't move the cursor.
+     * 
+     * @param from the index of the first image
+     * @param count the number of images
+     * @param dest the array to copy into
+     * @param offset the first index in dest to copy to
+     */
+    public void readImages(int from, int count, byte[] dest, int offset) {
+        readEntries(from, count, dest, offset);
+    }
+
+    /**
+     * Copies the pixels of the given number of images, starting with the image at index from (0 based),
+     * into dest and advances the position of dest. Doesn't move the cursor.
+     */
+    public void readImages(int from, int count, ByteBuffer dest) {
+        readEntries(from, count, dest);
+    }
+
+    /**
+     * A read-only view of the pixels of the image at the given index (0 based), without copying them.
+     * 
+     * @param index the index of the image
+     * @return the getEntryLength() unsigned pixels of the image
+     */
+    public ByteBuffer image(int index) {
+        return entries(index, 1);
+    }
+
     /**
      * Move the cursor to the next image.
      * 
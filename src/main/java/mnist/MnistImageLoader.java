@@ -7,8 +7,13 @@ import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 public class MnistImageLoader {
 	
@@ -16,6 +21,32 @@ public class MnistImageLoader {
 		return resize(ImageIO.read(new File(path)),28,28);
 	}
 
+	/**
+	 * Reads an image in any format ImageIO supports, like PNG, and scales it to 28x28.
+	 * The size is read from the header first, so a huge image is rejected before its pixels are decoded.
+	 *
+	 * @param maxSize How many pixels wide and high the image may be at most.
+	 * @throws IOException If the image can't be read, is too large or its format is not supported.
+	 */
+	public static BufferedImage loadImage(InputStream in, int maxSize) throws IOException {
+		ImageInputStream stream = ImageIO.createImageInputStream(in);
+		if (stream == null) throw new IOException("The image can't be read.");
+		try (stream) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) throw new IOException("The image format is not supported.");
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				if (width > maxSize || height > maxSize) throw new IOException("The image has " + width + "x" + height + " pixels, at most " + maxSize + "x" + maxSize + " are supported.");
+				return resize(reader.read(0), 28, 28);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
 	public static BufferedImage resize(BufferedImage img, int newW, int newH) {
 		Image tmp = img.getScaledInstance(newW, newH, Image.SCALE_SMOOTH);
 		BufferedImage dimg = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_ARGB);
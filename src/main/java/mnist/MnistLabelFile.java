@@ -15,12 +15,11 @@ public class MnistLabelFile extends MnistDbFile {
      * Creates new MNIST database label file ready for reading.
      * 
      * @param name the system-dependent filename
-     * @param mode the access mode
      * @throws IOException
      * @throws FileNotFoundException
      */
-    public MnistLabelFile(String name, String mode) throws IOException {
-        super(name, mode);
+    public MnistLabelFile(String name) throws IOException {
+        super(name);
     }
 
     /**
@@ -35,11 +34,33 @@ public class MnistLabelFile extends MnistDbFile {
 
     /** Read the specified number of labels from the current position*/
     public int[] readLabels(int num) throws IOException {
+        byte[] labels = new byte[num];
+        readFully(labels, 0, num);
         int[] out = new int[num];
-        for( int i=0; i<num; i++ ) out[i] = readLabel();
+        for( int i=0; i<num; i++ ) out[i] = labels[i] & 0xFF;
         return out;
     }
 
+    /**
+     * Copies the given number of labels, starting with the label at index from (0 based), into dest.
+     * Doesn't move the current position.
+     * 
+     * @param from the index of the first label
+     * @param count the number of labels
+     * @param dest the array to copy into
+     * @param offset the first index in dest to copy to
+     */
+    public void readLabels(int from, int count, byte[] dest, int offset) {
+        readEntries(from, count, dest, offset);
+    }
+
+    /**
+     * @return the label at the given index (0 based), without moving the current position
+     */
+    public int label(int index) {
+        return entries(index, 1).get(0) & 0xFF;
+    }
+
     @Override
     protected int getMagicNumber() {
         return 2049;
@@ -86,8 +86,8 @@ public class MnistPanel extends JPanel {
 		
 		path += "/src/main";
 
-		MnistImageFile m = new MnistImageFile(path + "/resources/train-images.idx3-ubyte", "rw");
-		MnistLabelFile l = new MnistLabelFile(path + "/resources/train-labels.idx1-ubyte", "rw");
+		MnistImageFile m = new MnistImageFile(path + "/resources/train-images.idx3-ubyte");
+		MnistLabelFile l = new MnistLabelFile(path + "/resources/train-labels.idx1-ubyte");
 		
 		JFrame f = new JFrame();
 		f.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);